@@ -0,0 +1,72 @@
+package com.example.islab1.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нагрузочный сравнительный прогон: одни и те же HTTP-запросы к приложению на пуле потоков Tomcat
+ * и в профиле virtual. Throughput даёт запросы в секунду, SampleTime - p99.
+ * Режим virtual требует JDK 21: ./gradlew jmh -PjavaVersion=21 -PjmhIncludes=HttpLoadBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(256)
+public class HttpLoadBenchmark extends SeededApplication {
+
+    @Param("10000")
+    public int rows;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    private HttpClient client;
+    private String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("virtual".equals(threads) && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("virtual threads need JDK 21+, run with -PjavaVersion=21");
+        }
+        // одинаковые лимиты для обоих режимов, отличаются только потоки
+        start(rows,
+                "spring.threads.virtual.enabled=" + "virtual".equals(threads),
+                "spring.datasource.hikari.maximum-pool-size=16",
+                "islab1.concurrency.max-requests=64",
+                "spring.cache.type=none");
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stop();
+    }
+
+    @Benchmark
+    public int listFiltered() throws IOException, InterruptedException {
+        return get("/persons?filterField=hairColor&filterValue=BLACK&sort=height&page=3");
+    }
+
+    @Benchmark
+    public int listSeek() throws IOException, InterruptedException {
+        return get("/persons?mode=seek&sort=name");
+    }
+
+    @Benchmark
+    public int heightGreater() throws IOException, InterruptedException {
+        return get("/ops/height-greater?height=200");
+    }
+
+    private int get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
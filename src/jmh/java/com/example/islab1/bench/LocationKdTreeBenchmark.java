@@ -0,0 +1,95 @@
+package com.example.islab1.bench;
+
+import com.example.islab1.model.Color;
+import com.example.islab1.repo.LocationPoint;
+import com.example.islab1.service.LocationBox;
+import com.example.islab1.service.LocationKdTree;
+import com.example.islab1.service.LocationMatch;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LocationKdTree против линейного прохода по тем же точкам, без БД и Spring.
+ * Координаты равномерны в пределах ограничений Location (±1 000 000).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LocationKdTreeBenchmark {
+    private static final int RANGE = 1_000_000;
+    private static final Color[] COLORS = Color.values();
+
+    @Param({"10000", "1000000"})
+    public int points;
+
+    private List<LocationPoint> data;
+    private LocationKdTree tree;
+    private LocationBox box;
+    private double x;
+    private double y;
+    private double z;
+    private double radius;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        data = new ArrayList<>(points);
+        for (int i = 0; i < points; i++) {
+            data.add(new LocationPoint(i + 1, random.nextDouble(-RANGE, RANGE), random.nextInt(-RANGE, RANGE),
+                    random.nextInt(-RANGE, RANGE), COLORS[random.nextInt(COLORS.length)]));
+        }
+        tree = LocationKdTree.build(data);
+        // около тысячной доли объёма: ~points/1000 точек в ответе
+        double side = 2.0 * RANGE / 10;
+        box = new LocationBox(-side / 2, side / 2, -side / 2, side / 2, -side / 2, side / 2);
+        x = 12_345;
+        y = -54_321;
+        z = 99_999;
+        radius = side / 2;
+    }
+
+    @Benchmark
+    public LocationKdTree build() {
+        return LocationKdTree.build(data);
+    }
+
+    @Benchmark
+    public void boxTree(Blackhole bh) {
+        tree.forEachInBox(box, bh::consume);
+    }
+
+    @Benchmark
+    public void boxScan(Blackhole bh) {
+        for (LocationPoint p : data) {
+            if (box.contains(p)) {
+                bh.consume(p);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<LocationMatch> radiusTree() {
+        return tree.nearest(x, y, z, 100, radius, p -> true);
+    }
+
+    @Benchmark
+    public List<LocationMatch> radiusScan() {
+        return LocationKdTree.scanNearest(data, x, y, z, 100, radius, p -> true);
+    }
+
+    @Benchmark
+    public List<LocationMatch> nearestTree() {
+        return tree.nearest(x, y, z, 10, Double.POSITIVE_INFINITY, p -> p.hairColor() == Color.BLACK);
+    }
+
+    @Benchmark
+    public List<LocationMatch> nearestScan() {
+        return LocationKdTree.scanNearest(data, x, y, z, 10, Double.POSITIVE_INFINITY,
+                p -> p.hairColor() == Color.BLACK);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.islab1.bench;
+
+import com.example.islab1.model.Color;
+import com.example.islab1.repo.PersonHeightRow;
+import com.example.islab1.service.PersonColumnStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запросы /ops по колоночному снимку без БД и Spring: сколько стоит проход по массивам,
+ * когда таблица целиком в памяти. Сравнение с JPA - в PersonOpsBenchmark с columnar=true/false.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PersonColumnStoreBenchmark {
+    private static final Color[] COLORS = Color.values();
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    private PersonColumnStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        store = new PersonColumnStore(rows);
+        for (int i = 1; i <= rows; i++) {
+            store.put(i, "person-" + i, random.nextInt(100, 250), COLORS[random.nextInt(COLORS.length)],
+                    (long) random.nextInt(1, 1_000));
+        }
+    }
+
+    @Benchmark
+    public List<Integer> distinctHeightsAfter() {
+        return store.distinctHeightsAfter(0, 500);
+    }
+
+    @Benchmark
+    public List<PersonHeightRow> heightRowsAfter() {
+        return store.heightRowsAfter(180, 180, 0, 100);
+    }
+
+    @Benchmark
+    public double hairColorShare() {
+        return store.hairColorShare(Color.BLACK);
+    }
+
+    @Benchmark
+    public long countHairColorInLocation() {
+        return store.countHairColorInLocation(Color.BLACK, 500);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.islab1.bench;
+
+import com.example.islab1.repo.PersonFilter;
+import com.example.islab1.service.CursorPage;
+import com.example.islab1.service.PersonRow;
+import com.example.islab1.service.PersonService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PersonListBenchmark extends SeededApplication {
+    private static final int PAGE_SIZE = 20;
+
+    @Param("10000")
+    public int rows;
+
+    @Param({"none", "name", "eyeColor", "hairColor", "nationality", "heightMin"})
+    public String filterField;
+
+    @Param({"id", "name", "height", "creationDate"})
+    public String sort;
+
+    private PersonService service;
+    private PersonFilter filter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // list и scroll - @Cacheable с одинаковыми аргументами: с кэшем страниц мерили бы Caffeine, а не запросы
+        start(rows, "spring.cache.type=none");
+        service = bean(PersonService.class);
+        String value = switch (filterField) {
+            case "name" -> "person-42";
+            case "eyeColor" -> "BLUE";
+            case "hairColor" -> "BLACK";
+            case "nationality" -> "USA";
+            case "heightMin" -> "200";
+            default -> null;
+        };
+        filter = PersonFilter.parse(value == null ? Map.of() : Map.of(filterField, value));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stop();
+    }
+
+    @Benchmark
+    public Page<PersonRow> firstPage() {
+        return service.list(filter, sort, "asc", 0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Page<PersonRow> deepOffsetPage() {
+        return service.list(filter, sort, "asc", rows / PAGE_SIZE / 8, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public CursorPage<PersonRow> keysetFirstPage() {
+        return service.scroll(filter, sort, "asc", null, PAGE_SIZE, false);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.islab1.bench;
+
+import com.example.islab1.model.Color;
+import com.example.islab1.repo.PersonFilter;
+import com.example.islab1.repo.LocationPoint;
+import com.example.islab1.repo.PersonHeightRow;
+import com.example.islab1.repo.PersonRepository;
+import com.example.islab1.service.CursorPage;
+import com.example.islab1.service.LocationIndex;
+import com.example.islab1.service.LocationMatch;
+import com.example.islab1.service.PersonColumns;
+import com.example.islab1.service.PersonService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Limit;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PersonOpsBenchmark extends SeededApplication {
+
+    @Param("10000")
+    public int rows;
+
+    // высоты через колоночный снимок или через JPA
+    @Param({"true", "false"})
+    public boolean columnar;
+
+    private PersonService service;
+    private PersonRepository repo;
+    private long locationId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        start(rows, "islab1.columnar.enabled=" + columnar);
+        service = bean(PersonService.class);
+        repo = bean(PersonRepository.class);
+        // после импорта LocationIndex перечитывает точки в фоне
+        LocationIndex index = bean(LocationIndex.class);
+        while (!index.isReady() || index.size() == 0) {
+            Thread.sleep(10);
+        }
+        PersonColumns columns = bean(PersonColumns.class);
+        while (columnar && (!columns.isReady() || columns.size() == 0)) {
+            Thread.sleep(10);
+        }
+        locationId = service.list(PersonFilter.NONE, "id", "asc", 0, 20).getContent().stream()
+                .filter(p -> p.locationId() != null)
+                .findFirst().orElseThrow()
+                .locationId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stop();
+    }
+
+    @Benchmark
+    public CursorPage<Integer> uniqueHeightsChunk() {
+        return service.uniqueHeights(null, 500);
+    }
+
+    @Benchmark
+    public void uniqueHeightsStream(Blackhole bh) {
+        service.forEachUniqueHeight(bh::consume);
+    }
+
+    @Benchmark
+    public CursorPage<PersonHeightRow> heightGreaterChunk() {
+        return service.findHeightGreaterThan(180, null, 100);
+    }
+
+    @Benchmark
+    public void heightGreaterStream(Blackhole bh) {
+        service.forEachHeightGreaterThan(180, bh::consume);
+    }
+
+    @Benchmark
+    public double hairColorShare() {
+        return service.hairColorShare(Color.BLACK);
+    }
+
+    @Benchmark
+    public long countHairColorInLocation() {
+        return service.countHairColorInLocation(Color.BLACK, locationId);
+    }
+
+    // k ближайших: k-d дерево против сортировки всех локаций в БД
+    @Benchmark
+    public List<LocationMatch> nearestLocationsIndexed() {
+        return service.nearestLocations(5_000, 5_000, 5_000, 10, null);
+    }
+
+    @Benchmark
+    public List<LocationPoint> nearestLocationsDatabaseScan() {
+        return repo.findNearestLocationPoints(5_000, 5_000, 5_000, null, Limit.of(10));
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.islab1.bench;
+
+import com.example.islab1.model.*;
+import com.example.islab1.repo.PersonFilter;
+import com.example.islab1.service.PersonPatch;
+import com.example.islab1.service.PersonRow;
+import com.example.islab1.service.PersonService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PersonWriteBenchmark extends SeededApplication {
+
+    @Param("10000")
+    public int rows;
+
+    private PersonService service;
+    private List<Integer> ids;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        start(rows);
+        service = bean(PersonService.class);
+        ids = service.list(PersonFilter.NONE, "id", "asc", 0, 1000).getContent().stream().map(PersonRow::id).toList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stop();
+    }
+
+    @Benchmark
+    public Person create() {
+        return service.create(person(next++));
+    }
+
+    @Benchmark
+    public Person update() {
+        int i = next++;
+        return service.update(ids.get(i % ids.size()), person(i));
+    }
+
+    // одно поле: UPDATE только height, без coordinates/location
+    @Benchmark
+    public Person patchHeight() {
+        int i = next++;
+        return service.patch(ids.get(i % ids.size()), null,
+                new PersonPatch(null, null, null, null, null, 100 + i % 150, null, null, null));
+    }
+
+    private static Person person(int i) {
+        Person p = new Person();
+        p.setName("bench-" + i);
+        p.setHeight(100 + i % 150);
+        p.setEyeColor(Color.values()[i % Color.values().length]);
+        p.setHairColor(Color.values()[(i / 3) % Color.values().length]);
+        p.setNationality(Country.values()[i % Country.values().length]);
+        p.setCoordinates(new Coordinates(i % 1000, (float) (i % 500)));
+        if (i % 2 == 0) {
+            p.setLocation(new Location((double) (i % 1000), i % 100, i % 10));
+        }
+        return p;
+    }
+}
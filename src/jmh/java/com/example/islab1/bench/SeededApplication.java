@@ -0,0 +1,106 @@
+package com.example.islab1.bench;
+
+import com.example.islab1.IsLab1Application;
+import com.example.islab1.repo.PersonRepository;
+import com.example.islab1.service.PersonImportRecord;
+import com.example.islab1.service.PersonImportService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Поднимает приложение и заполняет persons до заданного числа строк.
+ * По умолчанию - встроенная H2 в режиме PostgreSQL; -Dbench.jdbc-url переключает на настоящий Postgres.
+ */
+public abstract class SeededApplication {
+    static final String[] COLORS = {"GREEN", "BLACK", "BLUE", "WHITE"};
+    static final String[] COUNTRIES = {"USA", "VATICAN", "NORTH_KOREA"};
+
+    protected ConfigurableApplicationContext context;
+
+    protected void start(int rows, String... extraProperties) {
+        Map<String, Object> properties = new HashMap<>();
+        String jdbcUrl = System.getProperty("bench.jdbc-url");
+        if (jdbcUrl == null) {
+            properties.put("spring.datasource.url", "jdbc:h2:mem:bench;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+            properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+            properties.put("spring.datasource.username", "sa");
+            properties.put("spring.datasource.password", "");
+            properties.put("spring.flyway.enabled", "false");
+            properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        } else {
+            properties.put("spring.datasource.url", jdbcUrl);
+        }
+        properties.put("server.port", "0");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("logging.level.root", "warn");
+        for (String property : extraProperties) {
+            String[] kv = property.split("=", 2);
+            properties.put(kv[0], kv[1]);
+        }
+
+        context = new SpringApplicationBuilder(IsLab1Application.class).properties(properties).run();
+        seed(rows);
+    }
+
+    protected void stop() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    protected <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    // сидирование идёт через обычный импорт, чтобы данные проходили ту же валидацию
+    private void seed(int rows) {
+        long existing = bean(PersonRepository.class).count();
+        if (existing >= rows) {
+            return;
+        }
+        try {
+            Path csv = Files.createTempFile("persons-bench", ".csv");
+            try (BufferedWriter writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+                writer.write(String.join(",", PersonImportRecord.CSV_COLUMNS));
+                writer.newLine();
+                for (long i = existing; i < rows; i++) {
+                    writer.write(csvRow(i));
+                    writer.newLine();
+                }
+            }
+            try (InputStream in = Files.newInputStream(csv)) {
+                bean(PersonImportService.class).importPersons(in, PersonImportService.Format.CSV);
+            } finally {
+                Files.deleteIfExists(csv);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static String csvRow(long i) {
+        boolean withLocation = i % 2 == 0;
+        return String.join(",",
+                "person-" + i,
+                String.valueOf(100 + i % 150),
+                COLORS[(int) (i % COLORS.length)],
+                COLORS[(int) ((i / 7) % COLORS.length)],
+                COUNTRIES[(int) (i % COUNTRIES.length)],
+                "1990-01-" + String.format("%02d", 1 + i % 28),
+                String.valueOf(i % 1000),
+                String.valueOf((i * 31) % 1000),
+                withLocation ? String.valueOf((i * 17) % 10_000) : "",
+                withLocation ? String.valueOf((i * 13) % 10_000) : "",
+                withLocation ? String.valueOf((i * 11) % 10_000) : "");
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.islab1.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.jar.JarFile;
+
+/**
+ * Старт приложения в разных режимах сборки: время от запуска процесса до первого успешного ответа
+ * /persons и RSS процесса сразу после него. Не JMH - каждый замер это отдельный процесс.
+ * Запускается задачей startupBenchmark, аргументы - key=value (см. build.gradle).
+ * Режимы: jvm - как есть; prod - профиль prod; aot - prod на jar после processAot;
+ * cds - распакованный jar с архивом build/cds/application.jsa; native - GraalVM native image.
+ */
+public final class StartupBenchmark {
+    private static final Duration START_TIMEOUT = Duration.ofMinutes(2);
+    private static final String PROBE_PATH = "/persons";
+
+    private final Map<String, String> args;
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+    private StartupBenchmark(Map<String, String> args) {
+        this.args = args;
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Map<String, String> args = new HashMap<>();
+        for (String arg : argv) {
+            String[] kv = arg.split("=", 2);
+            args.put(kv[0], kv.length > 1 ? kv[1] : "");
+        }
+        new StartupBenchmark(args).run();
+    }
+
+    private void run() throws Exception {
+        int runs = Integer.parseInt(args.getOrDefault("runs", "3"));
+        List<String> results = new ArrayList<>();
+        System.out.printf("%-8s %10s %10s%n", "mode", "ttfr, ms", "rss, MB");
+        for (String mode : args.getOrDefault("modes", "jvm,prod").split(",")) {
+            List<String> command = command(mode.strip());
+            if (command == null) {
+                System.out.printf("%-8s skipped: artifacts are not built%n", mode);
+                continue;
+            }
+            long[] millis = new long[runs];
+            long[] rssKb = new long[runs];
+            for (int i = 0; i < runs; i++) {
+                long[] sample = measure(command);
+                millis[i] = sample[0];
+                rssKb[i] = sample[1];
+            }
+            long ttfr = median(millis);
+            long rss = median(rssKb);
+            System.out.printf("%-8s %10d %10.1f%n", mode, ttfr, rss / 1024.0);
+            results.add(String.format(Locale.ROOT,
+                    "{\"mode\":\"%s\",\"runs\":%d,\"timeToFirstRequestMs\":%d,\"rssKb\":%d,"
+                            + "\"timeToFirstRequestMsAll\":%s,\"rssKbAll\":%s}",
+                    mode, runs, ttfr, rss, Arrays.toString(millis), Arrays.toString(rssKb)));
+        }
+        Path report = Path.of(args.getOrDefault("report", "build/reports/startup/results.json"));
+        Files.createDirectories(report.getParent());
+        Files.writeString(report, "[" + String.join(",\n", results) + "]\n");
+        System.out.println("Results: " + report);
+    }
+
+    // null - для режима не собраны артефакты
+    private List<String> command(String mode) throws IOException {
+        String java = args.getOrDefault("java", "java");
+        Path jar = Path.of(args.get("jar"));
+        Path cds = Path.of(args.getOrDefault("cds", "build/cds"));
+        List<String> command = new ArrayList<>();
+        switch (mode) {
+            case "jvm" -> command.addAll(List.of(java, "-jar", jar.toString()));
+            case "prod" -> command.addAll(List.of(java, "-Dspring.profiles.active=prod", "-jar", jar.toString()));
+            case "aot" -> {
+                if (!aotProcessed(jar)) return null;
+                command.addAll(List.of(java, "-Dspring.profiles.active=prod", "-Dspring.aot.enabled=true",
+                        "-jar", jar.toString()));
+            }
+            case "cds" -> {
+                Path extracted = cds.resolve(jar.getFileName());
+                Path archive = cds.resolve("application.jsa");
+                if (!Files.exists(extracted) || !Files.exists(archive)) return null;
+                command.addAll(List.of(java, "-XX:SharedArchiveFile=" + archive, "-Dspring.profiles.active=prod"));
+                // архив пишется тем же режимом, каким собран jar
+                if (aotProcessed(jar)) {
+                    command.add("-Dspring.aot.enabled=true");
+                }
+                command.addAll(List.of("-jar", extracted.toString()));
+            }
+            case "native" -> {
+                Path executable = Path.of(args.getOrDefault("native", "build/native/nativeCompile/is-lab1"));
+                if (!Files.isExecutable(executable)) return null;
+                command.add(executable.toString());
+            }
+            default -> throw new IllegalArgumentException("unknown mode " + mode);
+        }
+        String jdbcUrl = args.get("jdbcUrl");
+        if (jdbcUrl != null && !jdbcUrl.isEmpty()) {
+            command.add("--spring.datasource.url=" + jdbcUrl);
+        }
+        command.add("--logging.level.root=warn");
+        return command;
+    }
+
+    // {время до первого ответа в мс, RSS в КБ}
+    private long[] measure(List<String> command) throws Exception {
+        int port = freePort();
+        List<String> withPort = new ArrayList<>(command);
+        withPort.add("--server.port=" + port);
+        HttpRequest probe = HttpRequest.newBuilder(URI.create("http://localhost:" + port + PROBE_PATH))
+                .timeout(Duration.ofSeconds(10))
+                .build();
+
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(withPort).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            while (true) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("exited with " + process.exitValue() + ": " + withPort);
+                }
+                if (System.nanoTime() - started > START_TIMEOUT.toNanos()) {
+                    throw new IllegalStateException("no response within " + START_TIMEOUT + ": " + withPort);
+                }
+                try {
+                    if (http.send(probe, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        break;
+                    }
+                } catch (IOException notYetListening) {
+                    // порт ещё не открыт
+                }
+                Thread.sleep(10);
+            }
+            long millis = (System.nanoTime() - started) / 1_000_000;
+            return new long[]{millis, rssKb(process.pid())};
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, java.util.concurrent.TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static boolean aotProcessed(Path jar) throws IOException {
+        try (JarFile file = new JarFile(jar.toFile())) {
+            return file.getEntry("BOOT-INF/classes/com/example/islab1/IsLab1Application__ApplicationContextInitializer.class")
+                    != null;
+        }
+    }
+
+    // VmRSS из /proc на Linux, иначе ps
+    private static long rssKb(long pid) throws IOException, InterruptedException {
+        Path status = Path.of("/proc", Long.toString(pid), "status");
+        if (Files.exists(status)) {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            }
+        }
+        Process ps = new ProcessBuilder("ps", "-o", "rss=", "-p", Long.toString(pid)).start();
+        String out = new String(ps.getInputStream().readAllBytes()).strip();
+        ps.waitFor();
+        return out.isEmpty() ? -1 : Long.parseLong(out);
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.islab1.ws;
+
+import com.example.islab1.bench.SeededApplication;
+import com.example.islab1.model.Color;
+import com.example.islab1.model.Country;
+import com.example.islab1.service.PersonChangeEvent;
+import com.example.islab1.service.PersonRow;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+// рассылка одного кадра /topic/persons по N подписанным сессиям через SimpleBroker
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BroadcastBenchmark extends SeededApplication {
+
+    @Param({"100", "1000"})
+    public int sessions;
+
+    @Param({"1", "50"})
+    public int eventsPerFrame;
+
+    private PersonChangeBroadcaster broadcaster;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // окно побольше: кадр отправляет сам бенчмарк через flush()
+        start(0, "islab1.ws.coalesce-window=1h");
+        broadcaster = bean(PersonChangeBroadcaster.class);
+        SimpleBrokerMessageHandler broker = bean(SimpleBrokerMessageHandler.class);
+        for (int i = 0; i < sessions; i++) {
+            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            headers.setSessionId("bench-" + i);
+            headers.setSubscriptionId("sub-0");
+            headers.setDestination(PersonChangePublisher.DESTINATION);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stop();
+    }
+
+    @Benchmark
+    public void fanOut() {
+        for (int i = 0; i < eventsPerFrame; i++) {
+            int id = next++;
+            broadcaster.submit(PersonChangeEvent.created(new PersonRow(id, 0L, "bench-" + id, 170, Color.BLUE,
+                    Color.BLACK, Country.USA, 1f, 2f, null, null, null, null, null, System.currentTimeMillis())));
+        }
+        broadcaster.flush();
+    }
+}
@@ -1,13 +1,50 @@
 package com.example.islab1;
 
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import org.springframework.boot.LazyInitializationExcludeFilter;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ReflectionUtils;
+
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @SpringBootApplication
+@EnableScheduling
+@EnableCaching
+@ImportRuntimeHints(IsLab1RuntimeHints.class)
 public class IsLab1Application {
 
 	public static void main(String[] args) {
 		SpringApplication.run(IsLab1Application.class, args);
 	}
 
+	// с spring.main.lazy-initialization (профиль prod) сразу создаются только бины с @Scheduled и
+	// слушателями событий - вместе со своими зависимостями (репозитории, JPA, Flyway); остальное - при первом запросе
+	@Bean
+	static LazyInitializationExcludeFilter eagerSchedulesAndListeners() {
+		return (beanName, beanDefinition, beanType) -> beanType != null && reactsOnItsOwn(beanType);
+	}
+
+	// заменяет модуль по умолчанию: отсутствующее в JSON поле Optional - null, а не Optional.empty(),
+	// иначе PATCH без location/birthday стирал бы их (PersonPatch)
+	@Bean
+	Jdk8Module jdk8Module() {
+		return new Jdk8Module().configureReadAbsentAsNull(true);
+	}
+
+	private static boolean reactsOnItsOwn(Class<?> beanType) {
+		AtomicBoolean found = new AtomicBoolean();
+		ReflectionUtils.doWithMethods(beanType, method -> found.set(true),
+				method -> !found.get() && (AnnotatedElementUtils.hasAnnotation(method, Scheduled.class)
+						|| AnnotatedElementUtils.hasAnnotation(method, EventListener.class)));
+		return found.get();
+	}
+
 }
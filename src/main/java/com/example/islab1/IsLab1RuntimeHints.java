@@ -0,0 +1,26 @@
+package com.example.islab1;
+
+import com.example.islab1.service.BulkDeleteProgress;
+import com.example.islab1.service.OpsJobSnapshot;
+import com.example.islab1.service.PersonImportRecord;
+import com.example.islab1.ws.PersonChangeBatch;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Подсказки для native image: то, что Spring AOT не выводит из бинов сам. Ресурсы, которые
+ * читаются не через стандартные пути Boot, и типы, которые Jackson (де)сериализует мимо контроллеров.
+ */
+class IsLab1RuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        // регионы кэша второго уровня (Caffeine JCache) и миграции по {vendor}
+        hints.resources().registerPattern("application.conf");
+        hints.resources().registerPattern("db/migration/postgresql/*.sql");
+        // кадры STOMP и строки импорта
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                PersonChangeBatch.class, BulkDeleteProgress.class, OpsJobSnapshot.class, PersonImportRecord.class);
+    }
+}
@@ -6,6 +6,10 @@ import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
 import org.springframework.format.annotation.DateTimeFormat;
 
 import java.time.ZoneId;
@@ -13,16 +17,42 @@ import java.time.ZonedDateTime;
 import java.util.Date;
 
 @Entity
-@Table(name = "persons")
+// UPDATE только по изменившимся столбцам: частичная правка не переписывает всю строку
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+// индексы создаёт миграция V3, здесь они для схем из ddl-auto (тесты, бенчмарки на H2)
+@Table(name = "persons", indexes = {
+        @Index(name = "persons_name_idx", columnList = "name, id"),
+        @Index(name = "persons_eye_color_idx", columnList = "eyeColor, id"),
+        @Index(name = "persons_hair_color_location_idx", columnList = "hairColor, location_id"),
+        @Index(name = "persons_nationality_idx", columnList = "nationality, id"),
+        @Index(name = "persons_height_id_idx", columnList = "height, id"),
+        @Index(name = "persons_creation_date_idx", columnList = "creationDate, id"),
+        @Index(name = "persons_birthday_idx", columnList = "birthday, id")
+})
+@NamedEntityGraph(name = Person.WITH_ASSOCIATIONS, attributeNodes = {
+        @NamedAttributeNode("coordinates"),
+        @NamedAttributeNode("location")
+})
 public class Person {
-    private static final ZoneId MOSCOW_ZONE = ZoneId.of("Europe/Moscow");
+    public static final String WITH_ASSOCIATIONS = "Person.withAssociations";
+
+    public static final ZoneId MOSCOW_ZONE = ZoneId.of("Europe/Moscow");
     private static final int NAME_MAX_LENGTH = 255;
     private static final int HEIGHT_MAX_VALUE = 1_000_000;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY) // БД генерит id
+    // БД генерит id из последовательности; пул значений позволяет Hibernate батчить вставки
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "persons_seq")
+    @SequenceGenerator(name = "persons_seq", sequenceName = "persons_seq", allocationSize = 50)
     private Integer id;
 
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
     @NotBlank(message = "{person.name.notBlank}")
     @Size(max = NAME_MAX_LENGTH, message = "{person.name.size}")
     @Column(nullable = false, length = NAME_MAX_LENGTH)
@@ -63,11 +93,17 @@ public class Person {
     public Person() {}
 
     public Integer getId() { return id; }
+    public Long getVersion() { return version; }
+    // только для скрытого поля формы (ожидаемая версия); у сохраняемых объектов версией управляет Hibernate
+    public void setVersion(Long version) { this.version = version; }
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
     public Coordinates getCoordinates() { return coordinates; }
     public void setCoordinates(Coordinates coordinates) { this.coordinates = coordinates; }
-    public ZonedDateTime getCreationDate() { return creationDate; }
+    // хранимое значение не трогаем: перезапись поля в @PostLoad делала загруженную сущность грязной
+    public ZonedDateTime getCreationDate() {
+        return creationDate == null ? null : creationDate.withZoneSameInstant(MOSCOW_ZONE);
+    }
     public Color getEyeColor() { return eyeColor; }
     public void setEyeColor(Color eyeColor) { this.eyeColor = eyeColor; }
     public Color getHairColor() { return hairColor; }
@@ -90,15 +126,8 @@ public class Person {
         }
     }
 
-    @PostLoad
-    public void postLoad() {
-        if (creationDate != null) {
-            creationDate = creationDate.withZoneSameInstant(MOSCOW_ZONE);
-        }
-    }
-
     @Transient
     public ZonedDateTime getCreationDateMoscow() {
-        return creationDate == null ? null : creationDate.withZoneSameInstant(MOSCOW_ZONE);
+        return getCreationDate();
     }
 }
@@ -0,0 +1,71 @@
+package com.example.islab1.repo;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Сверяет размер пула Hikari с лимитами PostgreSQL и лимитом одновременных запросов при старте.
+ * Только предупреждает: на общем сервере БД соединения могут занимать и другие клиенты.
+ */
+@Component
+public class ConnectionPoolGuard {
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPoolGuard.class);
+
+    private final DataSource dataSource;
+    private final int maxRequests;
+    private final boolean virtualThreads;
+
+    public ConnectionPoolGuard(DataSource dataSource,
+                               @Value("${islab1.concurrency.max-requests:0}") int maxRequests,
+                               @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.dataSource = dataSource;
+        this.maxRequests = maxRequests;
+        this.virtualThreads = virtualThreads;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void check() {
+        HikariDataSource hikari;
+        try {
+            // с репликой DataSource - прокси над маршрутизацией, вне транзакции он разворачивается в primary
+            if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+                return;
+            }
+            hikari = dataSource.unwrap(HikariDataSource.class);
+        } catch (SQLException ex) {
+            return;
+        }
+        int poolSize = hikari.getMaximumPoolSize();
+        if (virtualThreads && maxRequests <= 0) {
+            log.warn("Virtual threads are enabled without islab1.concurrency.max-requests; "
+                    + "requests beyond the pool size ({}) will queue on Hikari", poolSize);
+        }
+        if (!hikari.getJdbcUrl().startsWith("jdbc:postgresql:")) {
+            return;
+        }
+        try {
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+            Integer max = jdbc.queryForObject("SELECT current_setting('max_connections')::int", Integer.class);
+            Integer reserved = jdbc.queryForObject(
+                    "SELECT current_setting('superuser_reserved_connections')::int", Integer.class);
+            int available = max - reserved;
+            if (poolSize > available) {
+                log.warn("Hikari maximum-pool-size={} exceeds PostgreSQL connections available to clients ({})",
+                        poolSize, available);
+            } else {
+                log.info("Hikari maximum-pool-size={} of {} PostgreSQL client connections", poolSize, available);
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Could not read PostgreSQL connection limits", ex);
+        }
+    }
+}
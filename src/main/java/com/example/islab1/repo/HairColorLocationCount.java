@@ -0,0 +1,7 @@
+package com.example.islab1.repo;
+
+import com.example.islab1.model.Color;
+
+// количество людей с цветом волос в локации; locationId = null - без локации
+public record HairColorLocationCount(Color hairColor, Long locationId, Long count) {
+}
@@ -0,0 +1,15 @@
+package com.example.islab1.repo;
+
+import java.util.List;
+
+// все ошибки разбора фильтра сразу, а не первая попавшаяся
+public class InvalidFilterException extends IllegalArgumentException {
+    private final List<String> errors;
+
+    public InvalidFilterException(List<String> errors) {
+        super(String.join("; ", errors));
+        this.errors = List.copyOf(errors);
+    }
+
+    public List<String> getErrors() { return errors; }
+}
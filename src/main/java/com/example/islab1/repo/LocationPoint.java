@@ -0,0 +1,14 @@
+package com.example.islab1.repo;
+
+import com.example.islab1.model.Color;
+
+// точка Location человека для пространственных операций /ops
+public record LocationPoint(Integer personId, double x, int y, int z, Color hairColor) {
+
+    public double distanceSquared(double px, double py, double pz) {
+        double dx = x - px;
+        double dy = y - py;
+        double dz = z - pz;
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.islab1.repo;
+
+import com.example.islab1.model.Color;
+
+// контрольные суммы строк одного цвета волос для сверки PersonColumns с БД
+public record PersonColumnChecksum(Color hairColor, Long count, Long heightSum, Long idSum, Long locationIdSum) {
+}
@@ -0,0 +1,7 @@
+package com.example.islab1.repo;
+
+import com.example.islab1.model.Color;
+
+// строка для загрузки колоночного снимка PersonColumns; locationId = null - без локации
+public record PersonColumnRow(Integer id, String name, int height, Color hairColor, Long locationId) {
+}
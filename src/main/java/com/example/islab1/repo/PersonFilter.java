@@ -0,0 +1,156 @@
+package com.example.islab1.repo;
+
+import com.example.islab1.model.Color;
+import com.example.islab1.model.Country;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Набор условий для списка persons; пустые поля не участвуют. Все условия объединяются через AND,
+ * диапазоны включают обе границы. Разбирается из параметров запроса с проверкой всех значений сразу.
+ */
+public record PersonFilter(String name,
+                           String namePrefix,
+                           String nameContains,
+                           Color eyeColor,
+                           Color hairColor,
+                           Country nationality,
+                           Integer heightMin,
+                           Integer heightMax,
+                           LocalDate birthdayFrom,
+                           LocalDate birthdayTo,
+                           LocalDate createdFrom,
+                           LocalDate createdTo,
+                           Double locationXMin,
+                           Double locationXMax,
+                           Integer locationYMin,
+                           Integer locationYMax,
+                           Integer locationZMin,
+                           Integer locationZMax) {
+
+    public static final PersonFilter NONE = new PersonFilter(null, null, null, null, null, null, null, null,
+            null, null, null, null, null, null, null, null, null, null);
+
+    // имена параметров запроса в порядке полей записи
+    public static final List<String> PARAMS = List.of("name", "namePrefix", "nameContains", "eyeColor",
+            "hairColor", "nationality", "heightMin", "heightMax", "birthdayFrom", "birthdayTo", "createdFrom",
+            "createdTo", "locationXMin", "locationXMax", "locationYMin", "locationYMax", "locationZMin",
+            "locationZMax");
+
+    /**
+     * Параметры из {@link #PARAMS}; старая пара filterField/filterValue тоже понимается.
+     *
+     * @throws InvalidFilterException со списком всех некорректных параметров
+     */
+    public static PersonFilter parse(Map<String, String> params) {
+        Map<String, String> values = new HashMap<>();
+        params.forEach((key, value) -> {
+            if (PARAMS.contains(key) && value != null && !value.isBlank()) {
+                values.put(key, value.strip());
+            }
+        });
+        String legacyField = params.get("filterField");
+        String legacyValue = params.get("filterValue");
+        if (legacyField != null && !legacyField.isBlank() && legacyValue != null && !legacyValue.isBlank()) {
+            if (!PARAMS.contains(legacyField)) {
+                throw new InvalidFilterException(List.of("unknown filter field " + legacyField));
+            }
+            values.putIfAbsent(legacyField, legacyValue.strip());
+        }
+
+        Parser p = new Parser(values);
+        PersonFilter filter = new PersonFilter(
+                p.string("name"),
+                p.string("namePrefix"),
+                p.string("nameContains"),
+                p.value("eyeColor", v -> Color.valueOf(v.toUpperCase(Locale.ROOT))),
+                p.value("hairColor", v -> Color.valueOf(v.toUpperCase(Locale.ROOT))),
+                p.value("nationality", v -> Country.valueOf(v.toUpperCase(Locale.ROOT))),
+                p.value("heightMin", Integer::valueOf),
+                p.value("heightMax", Integer::valueOf),
+                p.value("birthdayFrom", LocalDate::parse),
+                p.value("birthdayTo", LocalDate::parse),
+                p.value("createdFrom", LocalDate::parse),
+                p.value("createdTo", LocalDate::parse),
+                p.value("locationXMin", Double::valueOf),
+                p.value("locationXMax", Double::valueOf),
+                p.value("locationYMin", Integer::valueOf),
+                p.value("locationYMax", Integer::valueOf),
+                p.value("locationZMin", Integer::valueOf),
+                p.value("locationZMax", Integer::valueOf));
+        p.range("height", filter.heightMin, filter.heightMax);
+        p.range("birthday", filter.birthdayFrom, filter.birthdayTo);
+        p.range("created", filter.createdFrom, filter.createdTo);
+        p.range("locationX", filter.locationXMin, filter.locationXMax);
+        p.range("locationY", filter.locationYMin, filter.locationYMax);
+        p.range("locationZ", filter.locationZMin, filter.locationZMax);
+        if (!p.errors.isEmpty()) {
+            throw new InvalidFilterException(p.errors);
+        }
+        return filter;
+    }
+
+    public boolean isEmpty() {
+        return equals(NONE);
+    }
+
+    public boolean hasLocationBounds() {
+        return locationXMin != null || locationXMax != null || locationYMin != null || locationYMax != null
+                || locationZMin != null || locationZMax != null;
+    }
+
+    // заданные параметры в виде строк - для ссылок пагинации и страницы списка
+    public Map<String, String> toParams() {
+        Object[] fields = {name, namePrefix, nameContains, eyeColor, hairColor, nationality, heightMin, heightMax,
+                birthdayFrom, birthdayTo, createdFrom, createdTo, locationXMin, locationXMax, locationYMin,
+                locationYMax, locationZMin, locationZMax};
+        Map<String, String> params = new LinkedHashMap<>();
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] != null) {
+                params.put(PARAMS.get(i), fields[i].toString());
+            }
+        }
+        return params;
+    }
+
+    // имена заданных условий, например "hairColor+heightMin"; "none" без условий
+    public String describe() {
+        Map<String, String> params = toParams();
+        return params.isEmpty() ? "none" : String.join("+", params.keySet());
+    }
+
+    private static final class Parser {
+        final Map<String, String> values;
+        final List<String> errors = new ArrayList<>();
+
+        Parser(Map<String, String> values) {
+            this.values = values;
+        }
+
+        String string(String key) {
+            return values.get(key);
+        }
+
+        <T> T value(String key, Function<String, T> parse) {
+            String raw = values.get(key);
+            if (raw == null) {
+                return null;
+            }
+            try {
+                return parse.apply(raw);
+            } catch (IllegalArgumentException | DateTimeParseException ex) {
+                errors.add(key + ": invalid value '" + raw + "'");
+                return null;
+            }
+        }
+
+        <T extends Comparable<? super T>> void range(String name, T min, T max) {
+            if (min != null && max != null && min.compareTo(max) > 0) {
+                errors.add(name + ": lower bound " + min + " is greater than upper bound " + max);
+            }
+        }
+    }
+}
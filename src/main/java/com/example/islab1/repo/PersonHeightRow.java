@@ -0,0 +1,5 @@
+package com.example.islab1.repo;
+
+// проекция для /ops/height-greater: только то, что выводится
+public record PersonHeightRow(Integer id, String name, int height) {
+}
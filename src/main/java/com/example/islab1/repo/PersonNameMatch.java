@@ -0,0 +1,8 @@
+package com.example.islab1.repo;
+
+// подсказка по имени: score - триграммное сходство с запросом, от 0 до 1
+public interface PersonNameMatch {
+    Integer getId();
+    String getName();
+    Double getScore();
+}
@@ -1,29 +1,122 @@
 package com.example.islab1.repo;
 
 import com.example.islab1.model.*;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
-public interface PersonRepository extends JpaRepository<Person, Integer> {
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
-    // Фильтрация
-    Page<Person> findByName(String name, Pageable pageable);
-    Page<Person> findByEyeColor(Color color, Pageable pageable);
-    Page<Person> findByHairColor(Color color, Pageable pageable);
-    Page<Person> findByNationality(Country country, Pageable pageable);
+public interface PersonRepository extends JpaRepository<Person, Integer>, JpaSpecificationExecutor<Person> {
+
+    // Фильтрация: coordinates и location подтягиваются тем же запросом, без N+1 при выводе таблицы
+    @Override
+    @EntityGraph(Person.WITH_ASSOCIATIONS)
+    Page<Person> findAll(Pageable pageable);
+    @Override
+    @EntityGraph(Person.WITH_ASSOCIATIONS)
+    Page<Person> findAll(Specification<Person> spec, Pageable pageable);
+
+    // подсказки: ближайшие по триграммному расстоянию, KNN-обход GiST-индекса без сортировки всех совпадений
+    @Query(value = "SELECT p.id AS id, p.name AS name, "
+            + "CAST(1 - (upper(p.name) <-> upper(:query)) AS double precision) AS score "
+            + "FROM persons p WHERE upper(p.name) LIKE upper(:pattern) "
+            + "ORDER BY upper(p.name) <-> upper(:query) LIMIT :limit", nativeQuery = true)
+    List<PersonNameMatch> suggestByName(@Param("query") String query,
+                                        @Param("pattern") String pattern,
+                                        @Param("limit") int limit);
+
+    long countByNationality(Country country);
+
+    // Удаление по nationality порциями: сущности с ассоциациями нужны для DELETED-событий и id дочерних строк
+    @EntityGraph(Person.WITH_ASSOCIATIONS)
+    List<Person> findByNationalityAndIdGreaterThanOrderByIdAsc(Country nationality, Integer afterId, Limit limit);
 
-    // Спец-операции
     @Modifying(clearAutomatically = true, flushAutomatically = true)
-    @Query("DELETE FROM Person p WHERE p.nationality = :nat")
-    int deleteAllByNationality(@Param("nat") Country nationality);
+    @Query("DELETE FROM Person p WHERE p.id IN :ids")
+    int deletePersonsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    // JPQL DELETE не каскадируется, дочерние строки удаляются явно
+    @Modifying
+    @Query("DELETE FROM Coordinates c WHERE c.id IN :ids")
+    int deleteCoordinatesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM Location l WHERE l.id IN :ids")
+    int deleteLocationsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // height > X: проекция вместо сущностей, порядок (height, id) для keyset-продолжения
+    @Query("SELECT new com.example.islab1.repo.PersonHeightRow(p.id, p.name, p.height) FROM Person p "
+            + "WHERE p.height > :height "
+            + "AND (p.height > :afterHeight OR (p.height = :afterHeight AND p.id > :afterId)) "
+            + "ORDER BY p.height, p.id")
+    List<PersonHeightRow> findHeightRowsAfter(@Param("height") int height,
+                                              @Param("afterHeight") int afterHeight,
+                                              @Param("afterId") int afterId,
+                                              Limit limit);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("SELECT new com.example.islab1.repo.PersonHeightRow(p.id, p.name, p.height) FROM Person p "
+            + "WHERE p.height > :height ORDER BY p.height, p.id")
+    Stream<PersonHeightRow> streamHeightRows(@Param("height") int height);
 
-    List<Person> findByHeightGreaterThan(int height);
+    // Уникальные height считает БД; поток читается курсором порциями по fetch size
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("SELECT DISTINCT p.height FROM Person p ORDER BY p.height")
+    Stream<Integer> streamDistinctHeights();
+
+    @Query("SELECT DISTINCT p.height FROM Person p WHERE p.height > :after ORDER BY p.height")
+    List<Integer> findDistinctHeightsAfter(@Param("after") int after, Limit limit);
     long countByHairColor(Color hairColor);
     long countByHairColorAndLocation_Id(Color hairColor, Long locationId);
+
+    // полный срез для PersonAggregates
+    @Query("SELECT new com.example.islab1.repo.HairColorLocationCount(p.hairColor, l.id, COUNT(p)) "
+            + "FROM Person p LEFT JOIN p.location l GROUP BY p.hairColor, l.id")
+    List<HairColorLocationCount> countGroupedByHairColorAndLocation();
+
+    // все строки для колоночного снимка, читаются курсором
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("SELECT new com.example.islab1.repo.PersonColumnRow(p.id, p.name, p.height, p.hairColor, l.id) "
+            + "FROM Person p LEFT JOIN p.location l")
+    Stream<PersonColumnRow> streamColumnRows();
+
+    @Query("SELECT new com.example.islab1.repo.PersonColumnChecksum(p.hairColor, COUNT(p), SUM(p.height), "
+            + "SUM(p.id), SUM(COALESCE(l.id, 0L))) FROM Person p LEFT JOIN p.location l GROUP BY p.hairColor")
+    List<PersonColumnChecksum> columnChecksums();
+
+    // все точки для построения LocationIndex
+    @Query("SELECT new com.example.islab1.repo.LocationPoint(p.id, l.x, l.y, l.z, p.hairColor) "
+            + "FROM Person p JOIN p.location l")
+    List<LocationPoint> findAllLocationPoints();
+
+    // пространственные запросы, пока LocationIndex не построен: полный проход по locations
+    @Query("SELECT new com.example.islab1.repo.LocationPoint(p.id, l.x, l.y, l.z, p.hairColor) "
+            + "FROM Person p JOIN p.location l "
+            + "WHERE l.x BETWEEN :minX AND :maxX AND l.y BETWEEN :minY AND :maxY AND l.z BETWEEN :minZ AND :maxZ")
+    List<LocationPoint> findLocationPointsInBox(@Param("minX") double minX, @Param("maxX") double maxX,
+                                                @Param("minY") int minY, @Param("maxY") int maxY,
+                                                @Param("minZ") int minZ, @Param("maxZ") int maxZ);
+
+    @Query("SELECT new com.example.islab1.repo.LocationPoint(p.id, l.x, l.y, l.z, p.hairColor) "
+            + "FROM Person p JOIN p.location l "
+            + "WHERE (:hairColor IS NULL OR p.hairColor = :hairColor) "
+            + "ORDER BY (l.x - :x) * (l.x - :x) + (CAST(l.y AS double) - :y) * (CAST(l.y AS double) - :y) "
+            + "+ (CAST(l.z AS double) - :z) * (CAST(l.z AS double) - :z), p.id")
+    List<LocationPoint> findNearestLocationPoints(@Param("x") double x, @Param("y") double y, @Param("z") double z,
+                                                  @Param("hairColor") Color hairColor, Limit limit);
 }
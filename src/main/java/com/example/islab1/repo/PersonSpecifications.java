@@ -0,0 +1,122 @@
+package com.example.islab1.repo;
+
+import com.example.islab1.model.Location;
+import com.example.islab1.model.Person;
+import jakarta.persistence.criteria.*;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * PersonFilter -> Criteria. Условия пишутся так, чтобы их покрывали индексы из миграций:
+ * сравнения по самим столбцам без функций, а поиск по части имени - через upper(name) LIKE,
+ * как в триграммном индексе persons_name_trgm_idx.
+ */
+public final class PersonSpecifications {
+    private static final char LIKE_ESCAPE = '\\';
+
+    private PersonSpecifications() {}
+
+    public static Specification<Person> matching(PersonFilter criteria) {
+        PersonFilter filter = criteria == null ? PersonFilter.NONE : criteria;
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            Path<String> name = root.get("name");
+
+            if (filter.name() != null) {
+                predicates.add(cb.equal(name, filter.name()));
+            }
+            if (filter.namePrefix() != null) {
+                predicates.add(cb.like(cb.upper(name), escape(filter.namePrefix().toUpperCase()) + "%", LIKE_ESCAPE));
+            }
+            if (filter.nameContains() != null) {
+                predicates.add(cb.like(cb.upper(name), "%" + escape(filter.nameContains().toUpperCase()) + "%",
+                        LIKE_ESCAPE));
+            }
+            if (filter.eyeColor() != null) {
+                predicates.add(cb.equal(root.get("eyeColor"), filter.eyeColor()));
+            }
+            if (filter.hairColor() != null) {
+                predicates.add(cb.equal(root.get("hairColor"), filter.hairColor()));
+            }
+            if (filter.nationality() != null) {
+                predicates.add(cb.equal(root.get("nationality"), filter.nationality()));
+            }
+
+            range(cb, predicates, root.get("height"), filter.heightMin(), filter.heightMax());
+            range(cb, predicates, root.<Date>get("birthday"), sqlDate(filter.birthdayFrom()), sqlDate(filter.birthdayTo()));
+            // creationDate хранится с временем: до конца дня createdTo, без функций над столбцом
+            Path<ZonedDateTime> created = root.get("creationDate");
+            if (filter.createdFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(created, startOfDay(filter.createdFrom())));
+            }
+            if (filter.createdTo() != null) {
+                predicates.add(cb.lessThan(created, startOfDay(filter.createdTo().plusDays(1))));
+            }
+
+            if (filter.hasLocationBounds()) {
+                Join<Person, Location> location = locationJoin(root);
+                range(cb, predicates, location.get("x"), filter.locationXMin(), filter.locationXMax());
+                range(cb, predicates, location.get("y"), filter.locationYMin(), filter.locationYMax());
+                range(cb, predicates, location.get("z"), filter.locationZMin(), filter.locationZMax());
+            }
+
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    /**
+     * coordinates и location тем же запросом, как Person.WITH_ASSOCIATIONS. Для keyset-окон
+     * (findBy(...).scroll()): @EntityGraph на них не действует. Ставится перед условиями фильтра,
+     * в запросах количества не добавляется.
+     */
+    public static Specification<Person> fetchingAssociations() {
+        return (root, query, cb) -> {
+            Class<?> resultType = query.getResultType();
+            if (resultType != Long.class && resultType != long.class) {
+                root.fetch("coordinates", JoinType.INNER);
+                root.fetch("location", JoinType.LEFT);
+            }
+            return null;
+        };
+    }
+
+    // уже подтянутая location переиспользуется: условия на её поля отсекают людей без location,
+    // как и внутреннее соединение
+    @SuppressWarnings("unchecked")
+    private static Join<Person, Location> locationJoin(Root<Person> root) {
+        for (Fetch<Person, ?> fetch : root.getFetches()) {
+            if ("location".equals(fetch.getAttribute().getName()) && fetch instanceof Join<?, ?> join) {
+                return (Join<Person, Location>) join;
+            }
+        }
+        return root.join("location", JoinType.INNER);
+    }
+
+    private static <T extends Comparable<? super T>> void range(CriteriaBuilder cb, List<Predicate> predicates,
+                                                               Path<T> path, T min, T max) {
+        if (min != null && max != null) {
+            predicates.add(cb.between(path, min, max));
+        } else if (min != null) {
+            predicates.add(cb.greaterThanOrEqualTo(path, min));
+        } else if (max != null) {
+            predicates.add(cb.lessThanOrEqualTo(path, max));
+        }
+    }
+
+    private static Date sqlDate(LocalDate date) {
+        return date == null ? null : java.sql.Date.valueOf(date);
+    }
+
+    private static ZonedDateTime startOfDay(LocalDate date) {
+        return date.atStartOfDay(Person.MOSCOW_ZONE);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.islab1.repo;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * Второй пул к реплике PostgreSQL, включается непустым islab1.datasource.replica.url. Пул primary
+ * настраивается как обычно через spring.datasource.*, реплике по умолчанию достаются те же логин и пароль.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnExpression("!'${islab1.datasource.replica.url:}'.isBlank()")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              @Value("${islab1.datasource.replica.url}") String url,
+                                              @Value("${islab1.datasource.replica.username:}") String username,
+                                              @Value("${islab1.datasource.replica.password:}") String password,
+                                              @Value("${islab1.datasource.replica.maximum-pool-size:10}") int poolSize) {
+        HikariDataSource replica = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        if (!username.isEmpty()) {
+            replica.setUsername(username);
+            replica.setPassword(password);
+        }
+        replica.setMaximumPoolSize(poolSize);
+        replica.setPoolName("replica");
+        replica.setReadOnly(true);
+        return replica;
+    }
+
+    @Bean
+    public ReplicaRouting replicaRouting(HikariDataSource replicaDataSource,
+                                         MeterRegistry registry,
+                                         @Value("${islab1.datasource.replica.max-lag:PT1S}") Duration maxLag,
+                                         @Value("${islab1.datasource.replica.sticky-window:PT5S}") Duration stickyWindow) {
+        return new ReplicaRouting(replicaDataSource, registry, maxLag, stickyWindow);
+    }
+
+    // его берут JPA, Flyway и всё остальное, что просит просто DataSource
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource,
+                                 HikariDataSource replicaDataSource,
+                                 ReplicaRouting replicaRouting) {
+        return new LazyConnectionDataSourceProxy(
+                new ReplicaRoutingDataSource(primaryDataSource, replicaDataSource, replicaRouting));
+    }
+
+    // open-in-view держит сессию весь запрос: без этого она держала бы и первое соединение, и запись после
+    // чтения ушла бы на реплику
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    @Bean
+    public JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory,
+                                                    ObjectProvider<TransactionManagerCustomizers> customizers) {
+        JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory);
+        transactionManager.setJpaDialect(new ReplicaAwareJpaDialect());
+        customizers.ifAvailable(c -> c.customize(transactionManager));
+        return transactionManager;
+    }
+
+    /**
+     * Сущности из read-only транзакции могли прийти с отстающей реплики: читать кэш второго уровня
+     * можно, класть в него - нет, иначе старая версия пережила бы запись на primary.
+     */
+    static final class ReplicaAwareJpaDialect extends HibernateJpaDialect {
+        @Override
+        public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+                throws SQLException {
+            Object transactionData = super.beginTransaction(entityManager, definition);
+            // с open-in-view EntityManager общий на запрос - режим выставляется каждой транзакции
+            entityManager.unwrap(Session.class)
+                    .setCacheMode(definition.isReadOnly() ? CacheMode.GET : CacheMode.NORMAL);
+            return transactionData;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.islab1.repo;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Решает, можно ли читать с реплики: отставание реплики проверяется по расписанию, и пока оно больше
+ * max-lag или реплика недоступна, всё идёт на primary. После своей записи клиент ещё sticky-window
+ * читает с primary - отметка хранится в запросе и в HTTP-сессии.
+ */
+public class ReplicaRouting {
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRouting.class);
+    private static final String PRIMARY_UNTIL = ReplicaRouting.class.getName() + ".primaryUntil";
+    private static final ThreadLocal<Boolean> PRIMARY_ONLY = new ThreadLocal<>();
+
+    // не в режиме восстановления - отдельная БД без репликации, отставания нет
+    private static final String POSTGRES_LAG = "SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0 "
+            + "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    private final JdbcTemplate replica;
+    private final Duration maxLag;
+    private final Duration stickyWindow;
+    private volatile boolean replicaUsable;
+    // секунды; NaN - реплика не ответила
+    private volatile double lagSeconds = Double.NaN;
+    private Boolean postgres;
+
+    public ReplicaRouting(DataSource replica, MeterRegistry registry, Duration maxLag, Duration stickyWindow) {
+        this.replica = new JdbcTemplate(replica);
+        this.maxLag = maxLag;
+        this.stickyWindow = stickyWindow;
+        Gauge.builder("persons.datasource.replica.lag", this, r -> r.lagSeconds)
+                .description("Отставание реплики при последней проверке")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    // загрузки снимков и сверки с БД должны видеть все закоммиченные изменения
+    public static <T> T onPrimary(Supplier<T> action) {
+        Boolean outer = PRIMARY_ONLY.get();
+        PRIMARY_ONLY.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (outer == null) {
+                PRIMARY_ONLY.remove();
+            }
+        }
+    }
+
+    public boolean isReplicaUsable() { return replicaUsable; }
+
+    // для read-only транзакции, у которой ещё нет соединения
+    public boolean useReplica() {
+        if (!replicaUsable || PRIMARY_ONLY.get() != null) {
+            return false;
+        }
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        return request == null || !(stickyUntil(request, RequestAttributes.SCOPE_REQUEST)
+                || stickyUntil(request, RequestAttributes.SCOPE_SESSION));
+    }
+
+    // вызывается после коммита записи; вне HTTP-запроса ничего не делает
+    public void stickToPrimary() {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request == null) {
+            return;
+        }
+        long until = System.currentTimeMillis() + stickyWindow.toMillis();
+        request.setAttribute(PRIMARY_UNTIL, until, RequestAttributes.SCOPE_REQUEST);
+        try {
+            request.setAttribute(PRIMARY_UNTIL, until, RequestAttributes.SCOPE_SESSION);
+        } catch (IllegalStateException ex) {
+            // ответ уже отправлен и сессию не создать - отметка живёт только до конца запроса
+            log.debug("Could not keep read-your-writes mark in the session", ex);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${islab1.datasource.replica.lag-check-interval:PT1S}")
+    public void checkLag() {
+        double lag;
+        try {
+            lag = isPostgres() ? replica.queryForObject(POSTGRES_LAG, Double.class) : probe();
+        } catch (DataAccessException | MetaDataAccessException ex) {
+            lagSeconds = Double.NaN;
+            if (replicaUsable) {
+                log.warn("Replica is unreachable, reads go to the primary", ex);
+            }
+            replicaUsable = false;
+            return;
+        }
+        lagSeconds = lag;
+        boolean usable = lag * 1000 <= maxLag.toMillis();
+        if (usable != replicaUsable) {
+            if (usable) {
+                log.info("Replica lag {} s is within {}, read-only transactions go to the replica", lag, maxLag);
+            } else {
+                log.warn("Replica lag {} s exceeds {}, reads go to the primary", lag, maxLag);
+            }
+        }
+        replicaUsable = usable;
+    }
+
+    private boolean stickyUntil(RequestAttributes request, int scope) {
+        return request.getAttribute(PRIMARY_UNTIL, scope) instanceof Long until
+                && until > System.currentTimeMillis();
+    }
+
+    private boolean isPostgres() throws MetaDataAccessException {
+        if (postgres == null) {
+            String product = JdbcUtils.extractDatabaseMetaData(replica.getDataSource(),
+                    meta -> meta.getDatabaseProductName());
+            postgres = "PostgreSQL".equals(product);
+        }
+        return postgres;
+    }
+
+    // другие СУБД не сообщают отставание: доступна - значит годится
+    private double probe() {
+        replica.queryForObject("SELECT 1", Integer.class);
+        return 0;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.Country;
+
+// снимок состояния задачи удаления; уходит клиентам по /topic/ops/delete-jobs и в ответах REST
+public record BulkDeleteProgress(String id,
+                                 Country nationality,
+                                 Status status,
+                                 long total,
+                                 long deleted,
+                                 String error) {
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, CANCELLED, FAILED }
+
+    public boolean finished() {
+        return status == Status.COMPLETED || status == Status.CANCELLED || status == Status.FAILED;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.islab1.service;
+
+import java.util.List;
+
+// страница keyset-пагинации; total заполняется только по запросу
+public record CursorPage<T>(List<T> content, String nextCursor, String previousCursor, Long total) {
+
+    public boolean hasNext() { return nextCursor != null; }
+
+    public boolean hasPrevious() { return previousCursor != null; }
+}
@@ -0,0 +1,10 @@
+package com.example.islab1.service;
+
+import java.util.List;
+
+// итог импорта; rejects содержит не больше islab1.import.max-reported-rejects записей
+public record ImportReport(long accepted, long rejected, List<Reject> rejects) {
+
+    public record Reject(long line, String message) {
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.islab1.service;
+
+import com.example.islab1.repo.LocationPoint;
+
+// параллелепипед для пространственных операций; границы включаются
+public record LocationBox(double minX, double maxX, double minY, double maxY, double minZ, double maxZ) {
+
+    public LocationBox {
+        if (!(minX <= maxX && minY <= maxY && minZ <= maxZ)) {
+            throw new IllegalArgumentException("box bounds must satisfy min <= max on every axis");
+        }
+    }
+
+    // куб, описанный вокруг шара: отбор кандидатов для запроса по радиусу
+    public static LocationBox around(double x, double y, double z, double radius) {
+        return new LocationBox(x - radius, x + radius, y - radius, y + radius, z - radius, z + radius);
+    }
+
+    public boolean contains(LocationPoint p) {
+        return p.x() >= minX && p.x() <= maxX && p.y() >= minY && p.y() <= maxY && p.z() >= minZ && p.z() <= maxZ;
+    }
+
+    double min(int axis) {
+        return axis == 0 ? minX : axis == 1 ? minY : minZ;
+    }
+
+    double max(int axis) {
+        return axis == 0 ? maxX : axis == 1 ? maxY : maxZ;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.Color;
+import com.example.islab1.repo.LocationPoint;
+
+import java.util.List;
+import java.util.Map;
+
+// итог запроса по параллелепипеду: всего, разбивка по цвету волос и первые точки по id
+public record LocationBoxResult(long total, Map<Color, Long> byHairColor, List<LocationPoint> points) {
+}
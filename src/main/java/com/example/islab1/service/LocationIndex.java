@@ -0,0 +1,319 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.Color;
+import com.example.islab1.repo.LocationPoint;
+import com.example.islab1.repo.PersonRepository;
+import com.example.islab1.repo.ReplicaRouting;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Пространственный индекс точек Location для /ops: {@link LocationKdTree} плюс изменения после его
+ * построения. Правки после коммита ложатся в небольшую дельту, которую запросы просматривают целиком;
+ * когда дельта дорастает до merge-threshold, дерево в фоне перестраивается вместе с ней. Полная
+ * перестройка из БД - при старте, после массовых операций и по расписанию, как сверка PersonAggregates.
+ */
+@Component
+public class LocationIndex {
+    private static final Logger log = LoggerFactory.getLogger(LocationIndex.class);
+
+    private final PersonRepository repo;
+    private final int mergeThreshold;
+    private final ExecutorService rebuilder;
+    private final AtomicBoolean reloadQueued = new AtomicBoolean();
+    private final AtomicBoolean mergeQueued = new AtomicBoolean();
+
+    // изменения копятся с самого старта, а запросы идут в индекс после первой загрузки из БД
+    private volatile State state = new State(LocationKdTree.build(List.of()), Delta.EMPTY, new Delta());
+    // false, пока дерево не построено - тогда PersonService идёт в БД
+    private volatile boolean ready;
+
+    public LocationIndex(PersonRepository repo,
+                         MeterRegistry registry,
+                         @Value("${islab1.location-index.merge-threshold:4096}") int mergeThreshold) {
+        this.repo = repo;
+        this.mergeThreshold = Math.max(mergeThreshold, 1);
+        this.rebuilder = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "location-index-rebuild");
+            t.setDaemon(true);
+            return t;
+        });
+        Gauge.builder("persons.locations.index.size", this, LocationIndex::size)
+                .description("Точек в k-d дереве")
+                .register(registry);
+        Gauge.builder("persons.locations.index.delta", this, i -> i.state.live.size())
+                .description("Изменений поверх дерева, ещё не влитых в него")
+                .register(registry);
+    }
+
+    public boolean isReady() { return ready; }
+
+    // точек в дереве, без дельты
+    public int size() { return state.tree.size(); }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        if (reloadQueued.compareAndSet(false, true)) {
+            rebuilder.execute(() -> {
+                reloadQueued.set(false);
+                if (rebuild(frozen -> ReplicaRouting.onPrimary(repo::findAllLocationPoints), "reload")) {
+                    ready = true;
+                }
+            });
+        }
+    }
+
+    // страховка от пропущенных событий, например правок в обход PersonService
+    @Scheduled(initialDelayString = "${islab1.location-index.reload-interval:PT15M}",
+            fixedDelayString = "${islab1.location-index.reload-interval:PT15M}")
+    public void scheduledReload() {
+        reload();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPersonChange(PersonChangeEvent event) {
+        switch (event.type()) {
+            case CREATED -> put(point(event.person()));
+            case UPDATED -> {
+                LocationPoint after = point(event.person());
+                if (after != null) {
+                    put(after);
+                } else {
+                    remove(event.id());
+                }
+            }
+            case DELETED -> remove(event.id());
+            // затронутые строки неизвестны
+            case BULK_DELETED, BULK_IMPORTED -> reload();
+        }
+    }
+
+    // правки на других узлах двигают и этот индекс
+    @EventListener
+    public void onRelayed(RelayedPersonChange change) {
+        if (!change.local()) {
+            onPersonChange(change.event());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    public LocationBoxResult inBox(LocationBox box, int limit) {
+        State s = state;
+        BoxCollector collector = new BoxCollector(limit);
+        s.tree.forEachInBox(box, p -> {
+            if (s.visibleInTree(p.personId())) {
+                collector.accept(p);
+            }
+        });
+        s.forEachInDelta(p -> {
+            if (box.contains(p)) {
+                collector.accept(p);
+            }
+        });
+        return collector.result();
+    }
+
+    public List<LocationMatch> nearest(double x, double y, double z, int k, double maxDistance, Color hairColor) {
+        State s = state;
+        Predicate<LocationPoint> color = p -> hairColor == null || p.hairColor() == hairColor;
+        LocationKdTree.Nearest best = new LocationKdTree.Nearest(k, maxDistance);
+        s.tree.nearest(x, y, z, p -> color.test(p) && s.visibleInTree(p.personId()), best);
+        s.forEachInDelta(p -> {
+            if (color.test(p)) {
+                best.offer(p, p.distanceSquared(x, y, z));
+            }
+        });
+        return best.sorted();
+    }
+
+    // тот же итог для точек, выбранных из БД
+    static LocationBoxResult summarize(Collection<LocationPoint> points, int limit) {
+        BoxCollector collector = new BoxCollector(limit);
+        points.forEach(collector::accept);
+        return collector.result();
+    }
+
+    private synchronized void put(LocationPoint p) {
+        if (p == null) {
+            return;
+        }
+        state.live.put(p);
+        mergeIfLarge();
+    }
+
+    private synchronized void remove(Integer personId) {
+        if (personId == null) {
+            return;
+        }
+        state.live.remove(personId);
+        mergeIfLarge();
+    }
+
+    private void mergeIfLarge() {
+        if (state.live.size() >= mergeThreshold && mergeQueued.compareAndSet(false, true)) {
+            rebuilder.execute(() -> {
+                mergeQueued.set(false);
+                rebuild(State::visiblePoints, "merge");
+            });
+        }
+    }
+
+    /**
+     * Замораживает текущую дельту, строит дерево из source(состояние с замороженной дельтой) вне
+     * блокировки и ставит его вместо старого. Изменения, пришедшие во время построения, копятся в новой
+     * дельте и переживают замену. Вызывается только из потока rebuilder; false - построить не удалось.
+     */
+    private boolean rebuild(Function<State, List<LocationPoint>> source, String reason) {
+        long started = System.nanoTime();
+        State frozen;
+        synchronized (this) {
+            frozen = new State(state.tree, state.live, new Delta());
+            state = frozen;
+        }
+        try {
+            LocationKdTree tree = LocationKdTree.build(source.apply(frozen));
+            synchronized (this) {
+                state = new State(tree, Delta.EMPTY, state.live);
+            }
+            log.info("Location index {}: {} points in {} ms", reason, tree.size(),
+                    (System.nanoTime() - started) / 1_000_000);
+            return true;
+        } catch (RuntimeException ex) {
+            // замороженная дельта возвращается под новую и будет влита следующей перестройкой
+            synchronized (this) {
+                state = new State(state.tree, Delta.EMPTY, state.frozen.mergedWith(state.live));
+            }
+            log.warn("Failed to {} location index, queries keep the previous tree", reason, ex);
+            return false;
+        }
+    }
+
+    private static LocationPoint point(PersonRow row) {
+        if (row == null || row.locationX() == null) {
+            return null;
+        }
+        return new LocationPoint(row.id(), row.locationX(), row.locationY(), row.locationZ(), row.hairColor());
+    }
+
+    /**
+     * Дерево и две дельты поверх него: frozen вливается в дерево, которое сейчас строится, live - всё,
+     * что пришло позже. Запись дельты о person скрывает его точки во всех слоях под ней.
+     */
+    private record State(LocationKdTree tree, Delta frozen, Delta live) {
+
+        boolean visibleInTree(Integer personId) {
+            return !live.hides(personId) && !frozen.hides(personId);
+        }
+
+        void forEachInDelta(Consumer<LocationPoint> sink) {
+            for (LocationPoint p : frozen.points()) {
+                if (!live.hides(p.personId())) {
+                    sink.accept(p);
+                }
+            }
+            for (LocationPoint p : live.points()) {
+                sink.accept(p);
+            }
+        }
+
+        // точки дерева и frozen без live - то, что должно войти в новое дерево при слиянии
+        List<LocationPoint> visiblePoints() {
+            List<LocationPoint> result = new ArrayList<>(tree.size() + frozen.size());
+            tree.forEach(p -> {
+                if (!frozen.hides(p.personId())) {
+                    result.add(p);
+                }
+            });
+            result.addAll(frozen.points());
+            return result;
+        }
+    }
+
+    private static final class Delta {
+        static final Delta EMPTY = new Delta();
+
+        private final Map<Integer, LocationPoint> points = new ConcurrentHashMap<>();
+        // person, чьи точки в нижних слоях устарели (изменён или удалён)
+        private final Set<Integer> hidden = ConcurrentHashMap.newKeySet();
+
+        void put(LocationPoint p) {
+            hidden.add(p.personId());
+            points.put(p.personId(), p);
+        }
+
+        void remove(Integer personId) {
+            hidden.add(personId);
+            points.remove(personId);
+        }
+
+        boolean hides(Integer personId) { return hidden.contains(personId); }
+
+        Collection<LocationPoint> points() { return points.values(); }
+
+        int size() { return hidden.size(); }
+
+        // this под newer: newer перекрывает записи this
+        Delta mergedWith(Delta newer) {
+            Delta merged = new Delta();
+            merged.hidden.addAll(hidden);
+            merged.points.putAll(points);
+            for (Integer id : newer.hidden) {
+                merged.remove(id);
+            }
+            merged.points.putAll(newer.points);
+            return merged;
+        }
+    }
+
+    // счётчики по цвету и первые limit точек по id
+    private static final class BoxCollector {
+        private final int limit;
+        private final EnumMap<Color, Long> byHairColor = new EnumMap<>(Color.class);
+        private final PriorityQueue<LocationPoint> first =
+                new PriorityQueue<>(Comparator.comparing(LocationPoint::personId).reversed());
+        private long total;
+
+        BoxCollector(int limit) {
+            this.limit = Math.max(limit, 0);
+        }
+
+        void accept(LocationPoint p) {
+            total++;
+            byHairColor.merge(p.hairColor(), 1L, Long::sum);
+            if (first.size() < limit) {
+                first.add(p);
+            } else if (limit > 0 && p.personId() < first.peek().personId()) {
+                first.poll();
+                first.add(p);
+            }
+        }
+
+        LocationBoxResult result() {
+            List<LocationPoint> points = new ArrayList<>(first);
+            points.sort(Comparator.comparing(LocationPoint::personId));
+            return new LocationBoxResult(total, byHairColor, points);
+        }
+    }
+}
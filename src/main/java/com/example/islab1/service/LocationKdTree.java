@@ -0,0 +1,234 @@
+package com.example.islab1.service;
+
+import com.example.islab1.repo.LocationPoint;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Неизменяемое 3D k-d дерево точек Location, хранится неявно в массиве: корень поддерева [lo, hi) -
+ * медиана mid = (lo + hi) / 2 по оси depth % 3, слева значения по этой оси не больше, справа не меньше.
+ * Построение O(n log n) quickselect-ом, запросы по области и kNN не заходят в поддеревья, которые
+ * не пересекают область. Изменения поверх дерева копит {@link LocationIndex}.
+ */
+public final class LocationKdTree {
+    private final LocationPoint[] points;
+    // x, y, z точки i - coords[3i], coords[3i + 1], coords[3i + 2]; обход не трогает сами записи
+    private final double[] coords;
+
+    private LocationKdTree(LocationPoint[] points, double[] coords) {
+        this.points = points;
+        this.coords = coords;
+    }
+
+    public static LocationKdTree build(Collection<LocationPoint> source) {
+        LocationPoint[] points = source.toArray(new LocationPoint[0]);
+        double[] coords = new double[points.length * 3];
+        for (int i = 0; i < points.length; i++) {
+            coords[3 * i] = points[i].x();
+            coords[3 * i + 1] = points[i].y();
+            coords[3 * i + 2] = points[i].z();
+        }
+        build(points, coords, 0, points.length, 0);
+        return new LocationKdTree(points, coords);
+    }
+
+    public int size() { return points.length; }
+
+    public void forEach(Consumer<LocationPoint> sink) {
+        for (LocationPoint p : points) {
+            sink.accept(p);
+        }
+    }
+
+    public void forEachInBox(LocationBox box, Consumer<LocationPoint> sink) {
+        inBox(0, points.length, 0, box, sink);
+    }
+
+    // k ближайших из прошедших filter на расстоянии не больше maxDistance, по возрастанию расстояния
+    public List<LocationMatch> nearest(double x, double y, double z, int k, double maxDistance,
+                                       Predicate<LocationPoint> filter) {
+        Nearest best = new Nearest(k, maxDistance);
+        nearest(x, y, z, filter, best);
+        return best.sorted();
+    }
+
+    void nearest(double x, double y, double z, Predicate<LocationPoint> filter, Nearest best) {
+        if (best.k > 0) {
+            nearest(0, points.length, 0, new double[]{x, y, z}, filter, best);
+        }
+    }
+
+    // линейный проход без дерева: откат на выборку из БД и база для сравнения в бенчмарке
+    public static List<LocationMatch> scanNearest(Collection<LocationPoint> points, double x, double y, double z,
+                                                  int k, double maxDistance, Predicate<LocationPoint> filter) {
+        Nearest best = new Nearest(k, maxDistance);
+        for (LocationPoint p : points) {
+            double d = p.distanceSquared(x, y, z);
+            if (d <= best.bound() && filter.test(p)) {
+                best.offer(p, d);
+            }
+        }
+        return best.sorted();
+    }
+
+    private void inBox(int lo, int hi, int axis, LocationBox box, Consumer<LocationPoint> sink) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (inside(mid, box)) {
+                sink.accept(points[mid]);
+            }
+            double split = coords[3 * mid + axis];
+            boolean left = box.min(axis) <= split;
+            boolean right = box.max(axis) >= split;
+            int next = axis == 2 ? 0 : axis + 1;
+            if (left && right) {
+                inBox(lo, mid, next, box, sink);
+                lo = mid + 1;
+            } else if (left) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+            axis = next;
+        }
+    }
+
+    private void nearest(int lo, int hi, int axis, double[] q, Predicate<LocationPoint> filter, Nearest best) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        int next = axis == 2 ? 0 : axis + 1;
+        double diff = q[axis] - coords[3 * mid + axis];
+        // сначала сторона точки запроса: граница поиска сужается быстрее
+        if (diff <= 0) {
+            nearest(lo, mid, next, q, filter, best);
+        } else {
+            nearest(mid + 1, hi, next, q, filter, best);
+        }
+        double d = distanceSquared(mid, q);
+        if (d <= best.bound() && filter.test(points[mid])) {
+            best.offer(points[mid], d);
+        }
+        if (diff * diff <= best.bound()) {
+            if (diff <= 0) {
+                nearest(mid + 1, hi, next, q, filter, best);
+            } else {
+                nearest(lo, mid, next, q, filter, best);
+            }
+        }
+    }
+
+    private boolean inside(int i, LocationBox box) {
+        double x = coords[3 * i];
+        double y = coords[3 * i + 1];
+        double z = coords[3 * i + 2];
+        return x >= box.minX() && x <= box.maxX() && y >= box.minY() && y <= box.maxY()
+                && z >= box.minZ() && z <= box.maxZ();
+    }
+
+    private double distanceSquared(int i, double[] q) {
+        double dx = coords[3 * i] - q[0];
+        double dy = coords[3 * i + 1] - q[1];
+        double dz = coords[3 * i + 2] - q[2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static void build(LocationPoint[] points, double[] coords, int lo, int hi, int axis) {
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            select(points, coords, lo, hi - 1, mid, axis);
+            int next = axis == 2 ? 0 : axis + 1;
+            build(points, coords, lo, mid, next);
+            lo = mid + 1;
+            axis = next;
+        }
+    }
+
+    // ставит на место k элемент, который стоял бы там после сортировки [left, right] по оси
+    private static void select(LocationPoint[] points, double[] coords, int left, int right, int k, int axis) {
+        while (right > left) {
+            // медиана трёх: уже упорядоченные данные не вырождают разбиение
+            int m = (left + right) >>> 1;
+            if (coords[3 * m + axis] < coords[3 * left + axis]) swap(points, coords, left, m);
+            if (coords[3 * right + axis] < coords[3 * left + axis]) swap(points, coords, left, right);
+            if (coords[3 * right + axis] < coords[3 * m + axis]) swap(points, coords, m, right);
+            double pivot = coords[3 * m + axis];
+
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (coords[3 * i + axis] < pivot) i++;
+                while (coords[3 * j + axis] > pivot) j--;
+                if (i <= j) {
+                    swap(points, coords, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            // [left, j] <= pivot, [i, right] >= pivot, между ними - равные pivot
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static void swap(LocationPoint[] points, double[] coords, int a, int b) {
+        LocationPoint p = points[a];
+        points[a] = points[b];
+        points[b] = p;
+        for (int axis = 0; axis < 3; axis++) {
+            double c = coords[3 * a + axis];
+            coords[3 * a + axis] = coords[3 * b + axis];
+            coords[3 * b + axis] = c;
+        }
+    }
+
+    // k лучших кандидатов: куча с худшим наверху, при равном расстоянии ближе меньший id
+    static final class Nearest {
+        private static final Comparator<LocationMatch> ORDER = Comparator.comparingDouble(LocationMatch::distance)
+                .thenComparing(m -> m.point().personId());
+
+        final int k;
+        private final double limit;
+        private final PriorityQueue<LocationMatch> heap;
+
+        Nearest(int k, double maxDistance) {
+            this.k = Math.max(k, 0);
+            this.limit = maxDistance * maxDistance;
+            this.heap = new PriorityQueue<>(Math.min(this.k, 1024) + 1, ORDER.reversed());
+        }
+
+        // квадрат расстояния, дальше которого кандидаты уже не нужны
+        double bound() {
+            return heap.size() < k ? limit : heap.peek().distance();
+        }
+
+        // расстояние в куче - квадрат, корень берётся только в sorted()
+        void offer(LocationPoint p, double distanceSquared) {
+            if (k == 0 || distanceSquared > limit) {
+                return;
+            }
+            LocationMatch match = new LocationMatch(p, distanceSquared);
+            if (heap.size() < k) {
+                heap.add(match);
+            } else if (ORDER.compare(match, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(match);
+            }
+        }
+
+        List<LocationMatch> sorted() {
+            List<LocationMatch> result = new ArrayList<>(heap);
+            result.sort(ORDER);
+            result.replaceAll(m -> new LocationMatch(m.point(), Math.sqrt(m.distance())));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.islab1.service;
+
+import com.example.islab1.repo.LocationPoint;
+
+// точка с расстоянием до точки запроса
+public record LocationMatch(LocationPoint point, double distance) {
+}
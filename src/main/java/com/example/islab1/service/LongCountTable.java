@@ -0,0 +1,132 @@
+package com.example.islab1.service;
+
+/**
+ * Счётчики по ключу long без упаковки: открытая адресация с линейным пробированием, ключ и счётчик
+ * лежат рядом в одном массиве. Нулевой счётчик удаляется сдвигом хвоста цепочки, так что
+ * отсутствующий ключ и ноль - одно и то же. Не потокобезопасна. get при одновременной записи не
+ * падает и не зацикливается, но может вернуть неверное значение - такое чтение перепроверяет
+ * {@link PersonAggregates}.
+ */
+final class LongCountTable {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    // [2i] - ключ, [2i + 1] - счётчик; при росте заменяется целиком
+    private long[] slots;
+    private int size;
+
+    LongCountTable(int expected) {
+        // ячеек - степень двойки не меньше 2 * expected
+        int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1;
+        slots = allocate(2 * capacity);
+    }
+
+    int size() { return size; }
+
+    long get(long key) {
+        long[] s = slots;
+        int mask = (s.length >> 1) - 1;
+        int i = index(key, mask);
+        for (int probes = 0; probes <= mask; probes++) {
+            long k = s[2 * i];
+            if (k == key) {
+                return s[2 * i + 1];
+            }
+            if (k == EMPTY) {
+                return 0;
+            }
+            i = (i + 1) & mask;
+        }
+        return 0;
+    }
+
+    void add(long key, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        int mask = (slots.length >> 1) - 1;
+        int i = index(key, mask);
+        while (true) {
+            long k = slots[2 * i];
+            if (k == key) {
+                long next = slots[2 * i + 1] + delta;
+                if (next == 0) {
+                    removeAt(i, mask);
+                } else {
+                    slots[2 * i + 1] = next;
+                }
+                return;
+            }
+            if (k == EMPTY) {
+                slots[2 * i] = key;
+                slots[2 * i + 1] = delta;
+                // заполнение не выше половины - цепочки короткие
+                if (++size * 2 > mask + 1) {
+                    grow();
+                }
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    // сумма |разностей| по всем ключам обеих таблиц
+    long distance(LongCountTable other) {
+        long distance = 0;
+        for (int i = 0; i < slots.length; i += 2) {
+            if (slots[i] != EMPTY) {
+                distance += Math.abs(slots[i + 1] - other.get(slots[i]));
+            }
+        }
+        long[] o = other.slots;
+        for (int i = 0; i < o.length; i += 2) {
+            if (o[i] != EMPTY && get(o[i]) == 0) {
+                distance += Math.abs(o[i + 1]);
+            }
+        }
+        return distance;
+    }
+
+    // ключ из цепочки за дырой переезжает в неё, если дыра не раньше его места по хешу
+    private void removeAt(int i, int mask) {
+        size--;
+        int gap = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            long k = slots[2 * j];
+            if (k == EMPTY) {
+                break;
+            }
+            if (((j - index(k, mask)) & mask) >= ((j - gap) & mask)) {
+                slots[2 * gap] = k;
+                slots[2 * gap + 1] = slots[2 * j + 1];
+                gap = j;
+            }
+        }
+        slots[2 * gap] = EMPTY;
+        slots[2 * gap + 1] = 0;
+    }
+
+    private void grow() {
+        long[] old = slots;
+        slots = allocate(old.length * 2);
+        size = 0;
+        for (int i = 0; i < old.length; i += 2) {
+            if (old[i] != EMPTY) {
+                add(old[i], old[i + 1]);
+            }
+        }
+    }
+
+    private static long[] allocate(int length) {
+        long[] s = new long[length];
+        for (int i = 0; i < length; i += 2) {
+            s[i] = EMPTY;
+        }
+        return s;
+    }
+
+    private static int index(long key, int mask) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.islab1.service;
+
+import com.example.islab1.service.OpsJobSnapshot.Status;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Аналитические операции /ops фоновыми задачами. Одинаковые запросы, пришедшие, пока первый ещё
+ * считается, ждут то же вычисление; готовый результат отдаётся повторно, пока его не сдвинет
+ * изменение persons (см. {@link OpsQuery.Op#affectedBy}) или не истечёт result-ttl - страховка
+ * на случай правок мимо событий, например исправления счётчиков PersonAggregates.
+ */
+@Service
+public class OpsJobService {
+    private static final Logger log = LoggerFactory.getLogger(OpsJobService.class);
+    private static final int MAX_FINISHED_JOBS = 200;
+
+    private final PersonService service;
+    private final ApplicationEventPublisher events;
+    private final ThreadPoolExecutor executor;
+    // запрос -> идущее или завершённое вычисление
+    private final Cache<OpsQuery, CompletableFuture<Object>> results;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public OpsJobService(PersonService service,
+                         ApplicationEventPublisher events,
+                         @Value("${islab1.ops-jobs.threads:2}") int threads,
+                         @Value("${islab1.ops-jobs.queue-capacity:100}") int queueCapacity,
+                         @Value("${islab1.ops-jobs.max-results:1000}") long maxResults,
+                         @Value("${islab1.ops-jobs.result-ttl:PT10M}") Duration resultTtl) {
+        this.service = service;
+        this.events = events;
+        AtomicInteger n = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(Math.max(threads, 1), Math.max(threads, 1), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)), r -> {
+                    Thread t = new Thread(r, "ops-job-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.results = Caffeine.newBuilder()
+                .maximumSize(maxResults)
+                .expireAfterWrite(resultTtl)
+                .build();
+    }
+
+    /**
+     * @throws RejectedExecutionException очередь вычислений заполнена
+     */
+    public OpsJobSnapshot submit(OpsQuery query) {
+        boolean[] started = {false};
+        // computeIfAbsent у Caffeine атомарен: параллельные одинаковые запросы получат одно вычисление
+        CompletableFuture<Object> future = results.asMap().computeIfAbsent(query, q -> {
+            started[0] = true;
+            return CompletableFuture.supplyAsync(() -> compute(q), executor);
+        });
+        if (started[0]) {
+            // неудачу не запоминаем - следующий запрос попробует заново
+            future.whenComplete((result, ex) -> {
+                if (ex != null) {
+                    results.asMap().remove(query, future);
+                }
+            });
+        }
+
+        pruneFinished();
+        Job job = new Job(UUID.randomUUID().toString(), query, future, !started[0], Instant.now());
+        jobs.put(job.id, job);
+        log.debug("Ops job {} {} for {}", job.id, started[0] ? "started" : "joined", query);
+        future.whenComplete((result, ex) -> publish(job));
+        if (!future.isDone()) {
+            publish(job);
+        }
+        return job.snapshot();
+    }
+
+    public Optional<OpsJobSnapshot> get(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(Job::snapshot);
+    }
+
+    public List<OpsJobSnapshot> list() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparing((Job j) -> j.submittedAt))
+                .map(Job::snapshot)
+                .toList();
+    }
+
+    // после коммита: результаты, которые изменение могло сдвинуть, больше не отдаются
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPersonChange(PersonChangeEvent event) {
+        results.asMap().keySet().removeIf(query -> query.op().affectedBy(event));
+    }
+
+    // результат мог сдвинуться и от правки на другом узле
+    @EventListener
+    public void onRelayed(RelayedPersonChange change) {
+        if (!change.local()) {
+            onPersonChange(change.event());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Object compute(OpsQuery q) {
+        return switch (q.op()) {
+            case UNIQUE_HEIGHTS -> service.uniqueHeights(q.after() == null ? null : Integer.valueOf(q.after()),
+                    q.size());
+            case HEIGHT_GREATER -> service.findHeightGreaterThan(q.height(), q.after(), q.size());
+            case HAIR_SHARE -> service.hairColorShare(q.hairColor());
+            case HAIR_COUNT_IN_LOCATION -> service.countHairColorInLocation(q.hairColor(), q.locationId());
+        };
+    }
+
+    private void publish(Job job) {
+        events.publishEvent(job.snapshot());
+    }
+
+    private void pruneFinished() {
+        List<Job> finished = jobs.values().stream()
+                .filter(j -> j.future.isDone())
+                .sorted(Comparator.comparing((Job j) -> j.submittedAt))
+                .toList();
+        for (int i = 0; i < finished.size() - MAX_FINISHED_JOBS + 1; i++) {
+            jobs.remove(finished.get(i).id);
+        }
+    }
+
+    private static final class Job {
+        final String id;
+        final OpsQuery query;
+        final CompletableFuture<Object> future;
+        final boolean cached;
+        final Instant submittedAt;
+        volatile Instant completedAt;
+
+        Job(String id, OpsQuery query, CompletableFuture<Object> future, boolean cached, Instant submittedAt) {
+            this.id = id;
+            this.query = query;
+            this.future = future;
+            this.cached = cached;
+            this.submittedAt = submittedAt;
+            future.whenComplete((result, ex) -> completedAt = Instant.now());
+        }
+
+        OpsJobSnapshot snapshot() {
+            if (!future.isDone()) {
+                return new OpsJobSnapshot(id, query, Status.RUNNING, cached, null, null, submittedAt, null);
+            }
+            Instant done = completedAt != null ? completedAt : Instant.now();
+            try {
+                return new OpsJobSnapshot(id, query, Status.COMPLETED, cached, future.join(), null, submittedAt, done);
+            } catch (CompletionException | CancellationException ex) {
+                Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                return new OpsJobSnapshot(id, query, Status.FAILED, cached, null, cause.getMessage(), submittedAt, done);
+            }
+        }
+    }
+}
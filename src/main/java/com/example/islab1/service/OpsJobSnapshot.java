@@ -0,0 +1,23 @@
+package com.example.islab1.service;
+
+import java.time.Instant;
+
+/**
+ * Снимок задачи /ops; уходит клиентам по /topic/ops/jobs и в ответах REST.
+ * cached - результат взят из уже посчитанного или к идущему вычислению присоединились.
+ */
+public record OpsJobSnapshot(String id,
+                             OpsQuery query,
+                             Status status,
+                             boolean cached,
+                             Object result,
+                             String error,
+                             Instant submittedAt,
+                             Instant completedAt) {
+
+    public enum Status { RUNNING, COMPLETED, FAILED }
+
+    public boolean finished() {
+        return status != Status.RUNNING;
+    }
+}
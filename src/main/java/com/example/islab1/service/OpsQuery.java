@@ -0,0 +1,92 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.Color;
+
+import java.util.Objects;
+
+/**
+ * Запрос аналитической операции /ops с нормализованными параметрами. Одинаковые запросы равны,
+ * поэтому запись служит ключом и для схлопывания параллельных вычислений, и для готовых результатов.
+ */
+public record OpsQuery(Op op, Integer height, String after, Integer size, Color hairColor, Long locationId) {
+    public static final int MAX_CHUNK_SIZE = 5_000;
+
+    public enum Op {
+        UNIQUE_HEIGHTS("unique-heights"),
+        HEIGHT_GREATER("height-greater"),
+        HAIR_SHARE("hair-share"),
+        HAIR_COUNT_IN_LOCATION("hair-count-in-location");
+
+        private final String path;
+
+        Op(String path) { this.path = path; }
+
+        public String path() { return path; }
+
+        public static Op ofPath(String path) {
+            for (Op op : values()) {
+                if (op.path.equals(path)) {
+                    return op;
+                }
+            }
+            throw new IllegalArgumentException("unknown ops operation " + path);
+        }
+
+        /**
+         * Может ли изменение сдвинуть результат операции. Добавление и удаление влияют на всё,
+         * правка - только через столбцы, которые операция читает.
+         */
+        boolean affectedBy(PersonChangeEvent event) {
+            if (event.type() != PersonChangeEvent.Type.UPDATED || event.previous() == null) {
+                return true;
+            }
+            PersonRow before = event.previous();
+            PersonRow after = event.person();
+            return switch (this) {
+                case UNIQUE_HEIGHTS -> before.height() != after.height();
+                case HEIGHT_GREATER -> before.height() != after.height() || !before.name().equals(after.name());
+                case HAIR_SHARE -> before.hairColor() != after.hairColor();
+                case HAIR_COUNT_IN_LOCATION -> before.hairColor() != after.hairColor()
+                        || !Objects.equals(before.locationId(), after.locationId());
+            };
+        }
+    }
+
+    // after - последнее значение предыдущей порции
+    public static OpsQuery uniqueHeights(String after, int size) {
+        if (after == null || after.isBlank()) {
+            return new OpsQuery(Op.UNIQUE_HEIGHTS, null, null, chunk(size), null, null);
+        }
+        try {
+            return new OpsQuery(Op.UNIQUE_HEIGHTS, null, Integer.toString(Integer.parseInt(after.strip())), chunk(size),
+                    null, null);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("malformed cursor " + after, ex);
+        }
+    }
+
+    public static OpsQuery heightGreater(int height, String after, int size) {
+        return new OpsQuery(Op.HEIGHT_GREATER, height, after == null || after.isBlank() ? null : after, chunk(size),
+                null, null);
+    }
+
+    public static OpsQuery hairShare(Color hairColor) {
+        return new OpsQuery(Op.HAIR_SHARE, null, null, null, required(hairColor), null);
+    }
+
+    public static OpsQuery hairCountInLocation(Color hairColor, Long locationId) {
+        return new OpsQuery(Op.HAIR_COUNT_IN_LOCATION, null, null, null, required(hairColor),
+                locationId);
+    }
+
+    private static Color required(Color hairColor) {
+        if (hairColor == null) {
+            throw new IllegalArgumentException("hairColor is required");
+        }
+        return hairColor;
+    }
+
+    private static int chunk(int size) {
+        return Math.min(Math.max(size, 1), MAX_CHUNK_SIZE);
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.Color;
+import com.example.islab1.repo.HairColorLocationCount;
+import com.example.islab1.repo.PersonRepository;
+import com.example.islab1.repo.ReplicaRouting;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+
+/**
+ * Счётчики для /ops: всего людей, по цвету волос и по паре (locationId, цвет волос).
+ * Строятся при старте, обновляются событиями после коммита и сверяются с БД по расписанию.
+ * События, закоммиченные, пока идёт запрос к БД, запоминаются и досчитываются в загруженные
+ * счётчики перед заменой - иначе они остались бы только в старых. Расхождение, найденное одной
+ * сверкой, может быть гонкой с записью; исправляется только то, что держится две сверки подряд.
+ */
+@Component
+public class PersonAggregates {
+    private static final Logger log = LoggerFactory.getLogger(PersonAggregates.class);
+    private static final Color[] COLORS = Color.values();
+
+    private final PersonRepository repo;
+    private final boolean repairOnDrift;
+    private final AtomicLong lastDrift = new AtomicLong();
+    // правки, замена счётчиков и буфер событий - под записью; запросы /ops читают оптимистично
+    private final StampedLock lock = new StampedLock();
+    // загрузки из старта, массовых операций и сверки идут по одной
+    private final ReentrantLock loading = new ReentrantLock();
+
+    // null, пока счётчики не построены - тогда PersonService считает через БД
+    private volatile Counters counters;
+    // события за время загрузки; под lock
+    private List<PersonChangeEvent> duringLoad;
+    // расхождение на прошлой сверке; только в потоке расписания
+    private long previousDrift;
+
+    public PersonAggregates(PersonRepository repo,
+                            MeterRegistry registry,
+                            @Value("${islab1.aggregates.repair-on-drift:true}") boolean repairOnDrift) {
+        this.repo = repo;
+        this.repairOnDrift = repairOnDrift;
+        Gauge.builder("persons.aggregates.drift", lastDrift, AtomicLong::get)
+                .description("Расхождение счётчиков с БД при последней сверке")
+                .register(registry);
+    }
+
+    public boolean isReady() { return counters != null; }
+
+    // без записи чтение не блокируется; если запись всё же была, повтор под блокировкой чтения
+    public double hairColorShare(Color hairColor) {
+        long stamp = lock.tryOptimisticRead();
+        double share = counters.share(hairColor);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                share = counters.share(hairColor);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return share;
+    }
+
+    public long countHairColorInLocation(Color hairColor, long locationId) {
+        long key = key(locationId, hairColor);
+        long stamp = lock.tryOptimisticRead();
+        long count = counters.byLocation.get(key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = counters.byLocation.get(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return count;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        try {
+            long total = loadThen((current, loaded) -> {
+                counters = loaded;
+                return loaded.total;
+            });
+            log.info("Person aggregates rebuilt: total={}", total);
+        } catch (RuntimeException ex) {
+            log.warn("Failed to build person aggregates, /ops will query the database", ex);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPersonChange(PersonChangeEvent event) {
+        switch (event.type()) {
+            case CREATED, UPDATED, DELETED -> {
+                long stamp = lock.writeLock();
+                try {
+                    if (counters != null) {
+                        apply(counters, event);
+                    }
+                    if (duringLoad != null) {
+                        duringLoad.add(event);
+                    }
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+            }
+            // какие строки затронуты, неизвестно - пересчитываем целиком
+            case BULK_DELETED, BULK_IMPORTED -> rebuild();
+        }
+    }
+
+    // счётчики ведутся на каждом узле отдельно, так что нужны и чужие изменения; свои уже учтены
+    @EventListener
+    public void onRelayed(RelayedPersonChange change) {
+        if (!change.local()) {
+            onPersonChange(change.event());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${islab1.aggregates.reconcile-interval:PT5M}",
+            fixedDelayString = "${islab1.aggregates.reconcile-interval:PT5M}")
+    public void reconcile() {
+        if (counters == null) {
+            rebuild();
+            return;
+        }
+        boolean persistent = previousDrift != 0;
+        long drift = loadThen((current, actual) -> {
+            long d = current.drift(actual);
+            // actual уже с событиями времени загрузки и ставится под той же блокировкой - не устарел
+            if (d != 0 && persistent && repairOnDrift) {
+                counters = actual;
+            }
+            return d;
+        });
+        previousDrift = drift;
+        lastDrift.set(drift);
+        if (drift == 0) {
+            log.debug("Person aggregates match the database");
+        } else if (!persistent) {
+            log.debug("Person aggregates differ from the database by {}, checking again on the next reconcile", drift);
+        } else {
+            log.warn("Person aggregates drifted from the database by {} on two reconciles in a row{}",
+                    drift, repairOnDrift ? ", replaced with the database counts" : "");
+        }
+    }
+
+    /**
+     * Загружает счётчики из БД и под блокировкой записи досчитывает в них события, пришедшие за время
+     * запроса; action получает текущие и загруженные счётчики под той же блокировкой. Событие,
+     * закоммиченное до запроса, но доставленное после начала загрузки, посчитается дважды - окно в
+     * доли миллисекунды, такое расхождение держится и исправляется сверкой.
+     */
+    private <T> T loadThen(BiFunction<Counters, Counters, T> action) {
+        loading.lock();
+        try {
+            long stamp = lock.writeLock();
+            try {
+                duringLoad = new ArrayList<>();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            Counters loaded;
+            try {
+                loaded = load();
+            } catch (RuntimeException ex) {
+                stamp = lock.writeLock();
+                try {
+                    duringLoad = null;
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+                throw ex;
+            }
+            stamp = lock.writeLock();
+            try {
+                duringLoad.forEach(e -> apply(loaded, e));
+                duringLoad = null;
+                return action.apply(counters, loaded);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        } finally {
+            loading.unlock();
+        }
+    }
+
+    private Counters load() {
+        // сразу после массовой операции реплика может её ещё не содержать
+        List<HairColorLocationCount> rows = ReplicaRouting.onPrimary(repo::countGroupedByHairColorAndLocation);
+        Counters c = new Counters(rows.size());
+        for (HairColorLocationCount row : rows) {
+            c.add(row.hairColor(), row.locationId(), row.count());
+        }
+        return c;
+    }
+
+    private static void apply(Counters c, PersonChangeEvent event) {
+        switch (event.type()) {
+            case CREATED -> c.add(event.person(), 1);
+            case UPDATED -> {
+                c.add(event.previous(), -1);
+                c.add(event.person(), 1);
+            }
+            case DELETED -> c.add(event.person(), -1);
+            case BULK_DELETED, BULK_IMPORTED -> { }
+        }
+    }
+
+    // ключ пары (locationId, цвет) в одном long
+    private static long key(long locationId, Color hairColor) {
+        return locationId * COLORS.length + hairColor.ordinal();
+    }
+
+    // меняется только под записью в PersonAggregates.lock
+    private static final class Counters {
+        long total;
+        final long[] byHairColor = new long[COLORS.length];
+        final LongCountTable byLocation;
+
+        Counters(int expectedPairs) {
+            byLocation = new LongCountTable(expectedPairs);
+        }
+
+        double share(Color hairColor) {
+            return total == 0 ? 0.0 : (byHairColor[hairColor.ordinal()] * 100.0) / total;
+        }
+
+        void add(PersonRow row, long delta) {
+            if (row != null) {
+                add(row.hairColor(), row.locationId(), delta);
+            }
+        }
+
+        void add(Color hairColor, Long locationId, long delta) {
+            total += delta;
+            byHairColor[hairColor.ordinal()] += delta;
+            if (locationId != null) {
+                byLocation.add(key(locationId, hairColor), delta);
+            }
+        }
+
+        long drift(Counters other) {
+            long drift = Math.abs(total - other.total);
+            for (int c = 0; c < COLORS.length; c++) {
+                drift += Math.abs(byHairColor[c] - other.byHairColor[c]);
+            }
+            return drift + byLocation.distance(other.byLocation);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.Country;
+import com.example.islab1.model.Person;
+import com.example.islab1.repo.PersonRepository;
+import com.example.islab1.service.BulkDeleteProgress.Status;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Удаление по nationality фоновой задачей: порции по возрастанию id, каждая - короткая транзакция,
+ * так что блокировки строк держатся доли секунды. Coordinates и Location удаляются явно, потому что
+ * JPQL DELETE каскады сущности не выполняет. Задачу можно отменить между порциями и продолжить
+ * с последнего удалённого id.
+ */
+@Service
+public class PersonBulkDeleteService {
+    private static final Logger log = LoggerFactory.getLogger(PersonBulkDeleteService.class);
+    private static final int MAX_FINISHED_JOBS = 20;
+
+    private final PersonRepository repo;
+    private final TransactionTemplate tx;
+    private final ApplicationEventPublisher events;
+    private final int chunkSize;
+    private final ExecutorService executor;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    // не synchronized: под замком идёт запрос к БД, а monitor закрепил бы виртуальный поток за носителем
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public PersonBulkDeleteService(PersonRepository repo,
+                                   TransactionTemplate tx,
+                                   ApplicationEventPublisher events,
+                                   @Value("${islab1.bulk-delete.chunk-size:500}") int chunkSize) {
+        this.repo = repo;
+        this.tx = tx;
+        this.events = events;
+        this.chunkSize = Math.max(chunkSize, 1);
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "person-bulk-delete");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // повторный запуск по той же стране возвращает уже идущую задачу
+    public BulkDeleteProgress start(Country nationality) {
+        lock.lock();
+        try {
+            for (Job job : jobs.values()) {
+                if (job.nationality == nationality && !job.progress().finished()) {
+                    return job.progress();
+                }
+            }
+            pruneFinished();
+            Job job = new Job(UUID.randomUUID().toString(), nationality, repo.countByNationality(nationality));
+            jobs.put(job.id, job);
+            log.info("Bulk delete job {} queued for nationality={} total={}", job.id, nationality, job.total);
+            submit(job);
+            return job.progress();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Optional<BulkDeleteProgress> get(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(Job::progress);
+    }
+
+    public List<BulkDeleteProgress> list() {
+        return jobs.values().stream().map(Job::progress).toList();
+    }
+
+    public BulkDeleteProgress cancel(String id) {
+        Job job = require(id);
+        job.cancelRequested = true;
+        return job.progress();
+    }
+
+    public BulkDeleteProgress resume(String id) {
+        lock.lock();
+        try {
+            Job job = require(id);
+            if (job.status != Status.CANCELLED && job.status != Status.FAILED) {
+                throw new IllegalArgumentException("job " + id + " is " + job.status + " and cannot be resumed");
+            }
+            job.cancelRequested = false;
+            job.error = null;
+            job.status = Status.QUEUED;
+            log.info("Bulk delete job {} resumed after id={}", id, job.lastId);
+            submit(job);
+            return job.progress();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.values().forEach(job -> job.cancelRequested = true);
+        executor.shutdown();
+    }
+
+    private Job require(String id) {
+        Job job = jobs.get(id);
+        if (job == null) {
+            throw new NoSuchElementException("Bulk delete job not found");
+        }
+        return job;
+    }
+
+    private void submit(Job job) {
+        publish(job);
+        executor.execute(() -> run(job));
+    }
+
+    private void run(Job job) {
+        job.status = Status.RUNNING;
+        publish(job);
+        try {
+            while (!job.cancelRequested) {
+                Chunk chunk = tx.execute(status -> deleteChunk(job.nationality, job.lastId));
+                if (chunk == null || chunk.deleted() == 0) {
+                    break;
+                }
+                // позиция сдвигается только после коммита порции
+                job.lastId = chunk.lastId();
+                job.deleted += chunk.deleted();
+                publish(job);
+            }
+            job.status = job.cancelRequested ? Status.CANCELLED : Status.COMPLETED;
+            log.info("Bulk delete job {} {} nationality={} deleted={}", job.id, job.status, job.nationality,
+                    job.deleted);
+        } catch (RuntimeException ex) {
+            job.status = Status.FAILED;
+            job.error = ex.getMessage();
+            log.warn("Bulk delete job {} failed after id={}", job.id, job.lastId, ex);
+        }
+        publish(job);
+    }
+
+    private Chunk deleteChunk(Country nationality, int afterId) {
+        List<Person> persons = repo.findByNationalityAndIdGreaterThanOrderByIdAsc(nationality, afterId,
+                Limit.of(chunkSize));
+        if (persons.isEmpty()) {
+            return new Chunk(0, afterId);
+        }
+
+        List<Integer> ids = new ArrayList<>(persons.size());
+        List<Long> coordinateIds = new ArrayList<>(persons.size());
+        List<Long> locationIds = new ArrayList<>(persons.size());
+        List<PersonRow> rows = new ArrayList<>(persons.size());
+        for (Person p : persons) {
+            ids.add(p.getId());
+            coordinateIds.add(p.getCoordinates().getId());
+            if (p.getLocation() != null) {
+                locationIds.add(p.getLocation().getId());
+            }
+            rows.add(PersonRow.of(p));
+        }
+
+        // сначала persons: на coordinates и locations ссылаются их внешние ключи
+        int deleted = repo.deletePersonsByIdIn(ids);
+        repo.deleteCoordinatesByIdIn(coordinateIds);
+        if (!locationIds.isEmpty()) {
+            repo.deleteLocationsByIdIn(locationIds);
+        }
+        rows.forEach(row -> events.publishEvent(PersonChangeEvent.deleted(row)));
+        return new Chunk(deleted, ids.get(ids.size() - 1));
+    }
+
+    private void publish(Job job) {
+        events.publishEvent(job.progress());
+    }
+
+    private void pruneFinished() {
+        List<Job> finished = jobs.values().stream().filter(j -> j.progress().finished()).toList();
+        for (int i = 0; i < finished.size() - MAX_FINISHED_JOBS + 1; i++) {
+            jobs.remove(finished.get(i).id);
+        }
+    }
+
+    private record Chunk(int deleted, int lastId) {}
+
+    private static final class Job {
+        final String id;
+        final Country nationality;
+        final long total;
+        volatile Status status = Status.QUEUED;
+        volatile boolean cancelRequested;
+        volatile int lastId;
+        volatile long deleted;
+        volatile String error;
+
+        Job(String id, Country nationality, long total) {
+            this.id = id;
+            this.nationality = nationality;
+            this.total = total;
+        }
+
+        BulkDeleteProgress progress() {
+            return new BulkDeleteProgress(id, nationality, status, total, deleted, error);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.Country;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Изменение в таблице persons. Публикуется из {@link PersonService} внутри транзакции,
+ * слушатели получают его после коммита. previous - состояние до UPDATED, клиентам не отправляется.
+ */
+public record PersonChangeEvent(Type type, Integer id, Long version, PersonRow person, Country nationality,
+                                @JsonIgnore PersonRow previous) {
+
+    public enum Type { CREATED, UPDATED, DELETED, BULK_DELETED, BULK_IMPORTED }
+
+    public static PersonChangeEvent created(PersonRow row) {
+        return new PersonChangeEvent(Type.CREATED, row.id(), row.version(), row, null, null);
+    }
+
+    public static PersonChangeEvent updated(PersonRow previous, PersonRow row) {
+        return new PersonChangeEvent(Type.UPDATED, row.id(), row.version(), row, null, previous);
+    }
+
+    public static PersonChangeEvent deleted(PersonRow row) {
+        return new PersonChangeEvent(Type.DELETED, row.id(), row.version(), row, null, null);
+    }
+
+    public static PersonChangeEvent bulkDeleted(Country nationality) {
+        return new PersonChangeEvent(Type.BULK_DELETED, null, null, null, nationality, null);
+    }
+
+    public static PersonChangeEvent bulkImported() {
+        return new PersonChangeEvent(Type.BULK_IMPORTED, null, null, null, null, null);
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.Coordinates;
+import com.example.islab1.model.Country;
+import com.example.islab1.model.Location;
+import com.example.islab1.model.Person;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transactional outbox для нескольких узлов за балансировщиком. PersonChangeEvent пишется в
+ * person_change_outbox в той же транзакции, что и само изменение; каждый узел читает таблицу по
+ * возрастанию id и публикует {@link RelayedPersonChange} - так WebSocket-клиенты и локальные кэши
+ * узнают и об изменениях, сделанных на других узлах, в порядке коммитов. Порядок стоит глобальной
+ * блокировки: все изменения persons во всём кластере идут по одному до коммита. Только PostgreSQL;
+ * включается профилем multinode.
+ */
+@Component
+@ConditionalOnProperty(name = "islab1.outbox.enabled", havingValue = "true")
+@RegisterReflectionForBinding(PersonChangeOutbox.Payload.class)
+public class PersonChangeOutbox {
+    private static final Logger log = LoggerFactory.getLogger(PersonChangeOutbox.class);
+    // ключ pg_advisory_xact_lock: держится до конца коммита, поэтому id выдаются в порядке коммитов
+    private static final long ORDER_LOCK = 0x6f7574626f78L;
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher events;
+    private final EntityManagerFactory emf;
+    private final String node;
+    private final Duration pollInterval;
+    private final int batchSize;
+    private final Duration retention;
+    private final ScheduledExecutorService scheduler;
+    // ключ ресурса транзакции со списком её событий
+    private final Object pendingKey = new Object();
+
+    private volatile long position = -1;
+    private final Counter relayedLocal;
+    private final Counter relayedRemote;
+
+    public PersonChangeOutbox(JdbcTemplate jdbc,
+                              TransactionTemplate tx,
+                              ObjectMapper objectMapper,
+                              ApplicationEventPublisher events,
+                              EntityManagerFactory emf,
+                              MeterRegistry registry,
+                              @Value("${islab1.outbox.node-id:}") String node,
+                              @Value("${islab1.outbox.poll-interval:100ms}") Duration pollInterval,
+                              @Value("${islab1.outbox.batch-size:500}") int batchSize,
+                              @Value("${islab1.outbox.retention:PT1H}") Duration retention) {
+        this.jdbc = jdbc;
+        this.tx = tx;
+        this.objectMapper = objectMapper;
+        this.events = events;
+        this.emf = emf;
+        this.node = node == null || node.isBlank() ? UUID.randomUUID().toString() : node.strip();
+        this.pollInterval = pollInterval;
+        this.batchSize = Math.max(batchSize, 1);
+        this.retention = retention;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "person-change-relay");
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.relayedLocal = registry.counter("persons.outbox.relayed", "origin", "local");
+        this.relayedRemote = registry.counter("persons.outbox.relayed", "origin", "remote");
+        Gauge.builder("persons.outbox.position", this, o -> o.position)
+                .description("id последней разосланной записи outbox")
+                .register(registry);
+    }
+
+    public String node() { return node; }
+
+    // события транзакции копятся и пишутся одним батчем перед коммитом
+    @EventListener
+    public void onPersonChange(PersonChangeEvent event) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            // например, итог импорта: публикуется после всех порций
+            tx.executeWithoutResult(status -> write(List.of(event)));
+            return;
+        }
+        pending().add(event);
+    }
+
+    // с текущего конца таблицы: историю до старта узел не рассылает
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Long last = jdbc.queryForObject("select coalesce(max(id), 0) from person_change_outbox", Long.class);
+        position = last != null ? last : 0;
+        scheduler.scheduleWithFixedDelay(this::poll, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Person change relay started: node={} position={}", node, position);
+    }
+
+    // записи старше retention уже разосланы всем живым узлам; удалять может любой узел
+    @Scheduled(initialDelayString = "${islab1.outbox.cleanup-interval:PT1M}",
+            fixedDelayString = "${islab1.outbox.cleanup-interval:PT1M}")
+    public void cleanup() {
+        int removed = jdbc.update("delete from person_change_outbox where created_at < ?",
+                Timestamp.from(Instant.now().minus(retention)));
+        if (removed > 0) {
+            log.debug("Removed {} person change outbox entries", removed);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    void poll() {
+        try {
+            List<Entry> entries;
+            do {
+                entries = jdbc.query(
+                        "select id, origin, payload from person_change_outbox where id > ? order by id limit ?",
+                        (rs, n) -> new Entry(rs.getLong(1), rs.getString(2), rs.getString(3)),
+                        position, batchSize);
+                for (Entry entry : entries) {
+                    // сбой слушателя не должен зациклить рассылку на одной записи
+                    position = entry.id();
+                    deliver(entry);
+                }
+            } while (entries.size() == batchSize);
+        } catch (RuntimeException ex) {
+            log.warn("Failed to relay person changes after outbox position {}", position, ex);
+        }
+    }
+
+    private void deliver(Entry entry) {
+        PersonChangeEvent event;
+        try {
+            event = objectMapper.readValue(entry.payload(), Payload.class).event();
+        } catch (JsonProcessingException ex) {
+            log.warn("Skipping malformed person change outbox entry {}", entry.id(), ex);
+            return;
+        }
+        boolean local = node.equals(entry.origin());
+        if (local) {
+            relayedLocal.increment();
+        } else {
+            evictSecondLevelCache(event);
+            relayedRemote.increment();
+        }
+        events.publishEvent(new RelayedPersonChange(entry.id(), local, event));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<PersonChangeEvent> pending() {
+        List<PersonChangeEvent> pending =
+                (List<PersonChangeEvent>) TransactionSynchronizationManager.getResource(pendingKey);
+        if (pending != null) {
+            return pending;
+        }
+        List<PersonChangeEvent> batch = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(pendingKey, batch);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                write(batch);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(pendingKey);
+            }
+        });
+        return batch;
+    }
+
+    private void write(List<PersonChangeEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        jdbc.execute("select pg_advisory_xact_lock(" + ORDER_LOCK + ")");
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (PersonChangeEvent event : batch) {
+            rows.add(new Object[]{node, serialize(event)});
+        }
+        jdbc.batchUpdate("insert into person_change_outbox (origin, payload) values (?, ?)", rows);
+    }
+
+    private String serialize(PersonChangeEvent event) {
+        try {
+            return objectMapper.writeValueAsString(Payload.of(event));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot serialize person change " + event, ex);
+        }
+    }
+
+    // кэш второго уровня у каждого узла свой, чужие изменения Hibernate в нём не видел
+    private void evictSecondLevelCache(PersonChangeEvent event) {
+        Cache cache = emf.getCache();
+        if (event.id() == null) {
+            cache.evict(Person.class);
+            cache.evict(Coordinates.class);
+            cache.evict(Location.class);
+            return;
+        }
+        cache.evict(Person.class, event.id());
+        // id coordinates в событии нет - регион сбрасывается целиком
+        cache.evict(Coordinates.class);
+        for (PersonRow row : new PersonRow[]{event.person(), event.previous()}) {
+            if (row != null && row.locationId() != null) {
+                cache.evict(Location.class, row.locationId());
+            }
+        }
+    }
+
+    private record Entry(long id, String origin, String payload) {}
+
+    // в JSON самого события нет previous, а слушателям UPDATED он нужен
+    record Payload(PersonChangeEvent.Type type, Integer id, Long version, PersonRow person, Country nationality,
+                   PersonRow previous) {
+
+        static Payload of(PersonChangeEvent e) {
+            return new Payload(e.type(), e.id(), e.version(), e.person(), e.nationality(), e.previous());
+        }
+
+        PersonChangeEvent event() {
+            return new PersonChangeEvent(type, id, version, person, nationality, previous);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.islab1.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Маркер состояния таблицы persons для ETag в /api. Меняется на каждое закоммиченное изменение
+ * (те же события, что уходят по WebSocket), так что совпадение If-None-Match проверяется без БД.
+ * Эпоха - время старта: после перезапуска старые ETag не совпадут ни с чем.
+ */
+@Component
+public class PersonChangeToken {
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong generation = new AtomicLong();
+    // id -> ETag последнего известного состояния строки; отсутствие значит "спросить БД"
+    private final Cache<Integer, String> knownTags;
+
+    public PersonChangeToken(@Value("${islab1.api.known-etags:100000}") long knownTags) {
+        this.knownTags = Caffeine.newBuilder().maximumSize(knownTags).build();
+    }
+
+    public long generation() { return generation.get(); }
+
+    // ETag коллекции: любое изменение любой строки делает его недействительным
+    public String collectionTag(String resource) {
+        return "\"" + resource + "-" + epoch + "-" + generation.get() + "\"";
+    }
+
+    public String knownTag(Integer id) { return knownTags.getIfPresent(id); }
+
+    /**
+     * Запоминает ETag прочитанной строки. readGeneration - generation() до чтения: если за время чтения
+     * пришло событие, строка могла устареть, и запоминать её нельзя.
+     */
+    public String remember(PersonRow row, long readGeneration) {
+        String tag = tag(row);
+        if (generation.get() == readGeneration) {
+            knownTags.put(row.id(), tag);
+            // событие могло проскочить между проверкой и put
+            if (generation.get() != readGeneration) {
+                knownTags.asMap().remove(row.id(), tag);
+            }
+        }
+        return tag;
+    }
+
+    // версия - основная часть ETag; контрольная сумма ловит правки coordinates/location, не меняющие версию
+    public static String tag(PersonRow row) {
+        CRC32 crc = new CRC32();
+        crc.update(row.toString().getBytes(StandardCharsets.UTF_8));
+        return "\"" + row.id() + "-" + row.version() + "-" + Long.toHexString(crc.getValue()) + "\"";
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPersonChange(PersonChangeEvent event) {
+        generation.incrementAndGet();
+        switch (event.type()) {
+            case CREATED, UPDATED -> knownTags.put(event.id(), tag(event.person()));
+            case DELETED -> knownTags.invalidate(event.id());
+            // затронутые строки неизвестны
+            case BULK_DELETED -> knownTags.invalidateAll();
+            // импорт только добавляет строки, известные ETag остаются верными
+            case BULK_IMPORTED -> { }
+        }
+    }
+
+    // строку изменил другой узел (PersonChangeOutbox) - её ETag здесь тоже устарел
+    @EventListener
+    public void onRelayed(RelayedPersonChange change) {
+        if (!change.local()) {
+            onPersonChange(change.event());
+        }
+    }
+}
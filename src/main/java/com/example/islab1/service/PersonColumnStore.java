@@ -0,0 +1,358 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.Color;
+import com.example.islab1.repo.PersonColumnChecksum;
+import com.example.islab1.repo.PersonHeightRow;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Столбцы person в примитивных массивах: строка - слот, id = 0 у свободного слота. Слоты удалённых
+ * строк переиспользуются, так что массивы не растут от правок. Высоты дополнительно сведены в
+ * гистограмму с битовой картой непустых значений: уникальные высоты читаются из неё по порядку, а
+ * порция по курсору заранее знает верхнюю границу высоты. Проходы по строкам не создают
+ * объектов на строку, таблица больше CHUNK делится на части по ядрам общего ForkJoinPool.
+ * Не потокобезопасен - чтение и запись разделяет {@link PersonColumns}.
+ */
+public final class PersonColumnStore {
+    // ограничение person.height в схеме
+    static final int MAX_HEIGHT = 1_000_000;
+    // строк на одну задачу параллельного прохода
+    static final int CHUNK = 1 << 16;
+    private static final Color[] COLORS = Color.values();
+    private static final byte NO_COLOR = -1;
+    private static final long NO_LOCATION = 0;
+
+    private int[] ids;
+    private int[] heights;
+    private byte[] hairColors;
+    private long[] locationIds;
+    private String[] names;
+    // занятых слотов с начала массивов, включая свободные внутри
+    private int slots;
+    private int[] free = new int[16];
+    private int freeCount;
+    private final Map<Integer, Integer> slotById = new HashMap<>();
+    private final int[] heightCounts = new int[MAX_HEIGHT + 1];
+    private final BitSet presentHeights = new BitSet(MAX_HEIGHT + 1);
+
+    public PersonColumnStore(int capacity) {
+        int n = Math.max(capacity, 16);
+        ids = new int[n];
+        heights = new int[n];
+        hairColors = new byte[n];
+        locationIds = new long[n];
+        names = new String[n];
+    }
+
+    public int size() { return slotById.size(); }
+
+    // вставка или замена строки с тем же id
+    public void put(int id, String name, int height, Color hairColor, Long locationId) {
+        Integer existing = slotById.get(id);
+        int slot;
+        if (existing != null) {
+            slot = existing;
+            uncount(heights[slot]);
+        } else {
+            slot = allocate();
+            slotById.put(id, slot);
+        }
+        ids[slot] = id;
+        names[slot] = name;
+        heights[slot] = height;
+        hairColors[slot] = (byte) hairColor.ordinal();
+        locationIds[slot] = locationId == null ? NO_LOCATION : locationId;
+        if (heightCounts[height]++ == 0) {
+            presentHeights.set(height);
+        }
+    }
+
+    public void remove(int id) {
+        Integer slot = slotById.remove(id);
+        if (slot == null) {
+            return;
+        }
+        uncount(heights[slot]);
+        ids[slot] = 0;
+        names[slot] = null;
+        heights[slot] = 0;
+        hairColors[slot] = NO_COLOR;
+        locationIds[slot] = NO_LOCATION;
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, free.length * 2);
+        }
+        free[freeCount++] = slot;
+    }
+
+    // не больше limit уникальных height больше after, по возрастанию
+    public List<Integer> distinctHeightsAfter(int after, int limit) {
+        List<Integer> result = new ArrayList<>(Math.min(limit, 1024));
+        for (int h = presentHeights.nextSetBit(Math.max(after + 1, 1)); h >= 0 && result.size() < limit;
+             h = presentHeights.nextSetBit(h + 1)) {
+            result.add(h);
+        }
+        return result;
+    }
+
+    public int[] distinctHeights() {
+        return presentHeights.stream().toArray();
+    }
+
+    /**
+     * То же, что PersonRepository.findHeightRowsAfter: строки с height больше height и парой
+     * (height, id) после (afterHeight, afterId), первые limit в порядке (height, id). Каждая часть
+     * таблицы отбирает свои limit лучших ключей, потом части сливаются. Строки выше высоты, до
+     * которой по гистограмме уже набирается limit, отсекаются до построения ключа.
+     */
+    public List<PersonHeightRow> heightRowsAfter(int height, int afterHeight, int afterId, int limit) {
+        if (limit <= 0 || height >= MAX_HEIGHT) {
+            return List.of();
+        }
+        long afterKey = key(afterHeight, afterId);
+        int lowest = Math.max(Math.max(height + 1, afterHeight), 1);
+        int cutoff = cutoffHeight(Math.max(height, afterHeight), limit);
+        long[][] parts = chunks().mapToObj(c -> smallestKeys(from(c), to(c), lowest, cutoff, afterKey, limit))
+                .toArray(long[][]::new);
+        long[] keys = concat(parts);
+        Arrays.sort(keys);
+        return rows(keys, 0, Math.min(keys.length, limit));
+    }
+
+    // ключи (height, id) всех строк с height больше height по порядку - для потоковой выдачи порциями
+    public long[] heightKeysGreaterThan(int height) {
+        long[][] parts = chunks().mapToObj(c -> keysGreaterThan(from(c), to(c), height))
+                .toArray(long[][]::new);
+        long[] keys = concat(parts);
+        Arrays.parallelSort(keys);
+        return keys;
+    }
+
+    // строки по ключам [from, to); удалённые с тех пор пропускаются, имя берётся текущее
+    public List<PersonHeightRow> rows(long[] keys, int from, int to) {
+        List<PersonHeightRow> result = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            int id = (int) keys[i];
+            Integer slot = slotById.get(id);
+            if (slot != null) {
+                result.add(new PersonHeightRow(id, names[slot], (int) (keys[i] >>> 32)));
+            }
+        }
+        return result;
+    }
+
+    public double hairColorShare(Color hairColor) {
+        long total = size();
+        if (total == 0) return 0.0;
+        byte code = (byte) hairColor.ordinal();
+        long count = chunks().mapToLong(c -> countHairColor(from(c), to(c), code)).sum();
+        return (count * 100.0) / total;
+    }
+
+    public long countHairColorInLocation(Color hairColor, long locationId) {
+        if (locationId == NO_LOCATION) return 0;
+        byte code = (byte) hairColor.ordinal();
+        return chunks().mapToLong(c -> countHairColorInLocation(from(c), to(c), code, locationId)).sum();
+    }
+
+    /**
+     * Расхождение с контрольными суммами из БД: разница количеств по цветам плюс по единице на цвет,
+     * у которого количества сходятся, а суммы height, id или locationId - нет.
+     */
+    public long drift(Collection<PersonColumnChecksum> expected) {
+        long[][] actual = chunks().mapToObj(c -> checksums(from(c), to(c)))
+                .reduce(new long[COLORS.length][4], PersonColumnStore::add);
+        long[][] db = new long[COLORS.length][4];
+        for (PersonColumnChecksum row : expected) {
+            long[] sums = db[row.hairColor().ordinal()];
+            sums[0] = row.count();
+            sums[1] = row.heightSum();
+            sums[2] = row.idSum();
+            sums[3] = row.locationIdSum();
+        }
+        long drift = 0;
+        for (int c = 0; c < COLORS.length; c++) {
+            long diff = Math.abs(actual[c][0] - db[c][0]);
+            drift += diff != 0 ? diff : (Arrays.equals(actual[c], db[c]) ? 0 : 1);
+        }
+        return drift;
+    }
+
+    // строки высоты above могут быть до курсора и не считаются - граница от этого только выше
+    private int cutoffHeight(int above, int limit) {
+        long seen = 0;
+        for (int h = presentHeights.nextSetBit(above + 1); h >= 0; h = presentHeights.nextSetBit(h + 1)) {
+            seen += heightCounts[h];
+            if (seen >= limit) {
+                return h;
+            }
+        }
+        return MAX_HEIGHT;
+    }
+
+    private void uncount(int height) {
+        if (--heightCounts[height] == 0) {
+            presentHeights.clear(height);
+        }
+    }
+
+    private int allocate() {
+        if (freeCount > 0) {
+            return free[--freeCount];
+        }
+        if (slots == ids.length) {
+            int n = ids.length * 2;
+            ids = Arrays.copyOf(ids, n);
+            heights = Arrays.copyOf(heights, n);
+            hairColors = Arrays.copyOf(hairColors, n);
+            locationIds = Arrays.copyOf(locationIds, n);
+            names = Arrays.copyOf(names, n);
+        }
+        return slots++;
+    }
+
+    // на одну часть таблица проходится в вызывающем потоке
+    private IntStream chunks() {
+        IntStream chunks = IntStream.range(0, (slots + CHUNK - 1) / CHUNK);
+        return slots > CHUNK ? chunks.parallel() : chunks;
+    }
+
+    private static int from(int chunk) { return chunk * CHUNK; }
+
+    private int to(int chunk) { return Math.min(slots, (chunk + 1) * CHUNK); }
+
+    // height и id положительны, так что порядок ключей - порядок пар (height, id)
+    private static long key(int height, int id) {
+        return ((long) height << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    private long countHairColor(int from, int to, byte code) {
+        long count = 0;
+        for (int i = from; i < to; i++) {
+            if (hairColors[i] == code) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private long countHairColorInLocation(int from, int to, byte code, long locationId) {
+        long count = 0;
+        for (int i = from; i < to; i++) {
+            if (locationIds[i] == locationId && hairColors[i] == code) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // limit наименьших подходящих ключей части: куча с наибольшим наверху
+    // высоты [lowest, cutoff]; одно беззнаковое сравнение вместо двух - ветвь почти всегда не берётся
+    private long[] smallestKeys(int from, int to, int lowest, int cutoff, long afterKey, int limit) {
+        long[] heap = new long[Math.min(limit, to - from)];
+        int span = cutoff - lowest;
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            if (Integer.compareUnsigned(heights[i] - lowest, span) > 0) {
+                continue;
+            }
+            long key = key(heights[i], ids[i]);
+            if (key <= afterKey) {
+                continue;
+            }
+            if (n < heap.length) {
+                heap[n] = key;
+                siftUp(heap, n++);
+            } else if (key < heap[0]) {
+                heap[0] = key;
+                siftDown(heap, n);
+            }
+        }
+        return Arrays.copyOf(heap, n);
+    }
+
+    private long[] keysGreaterThan(int from, int to, int height) {
+        long[] keys = new long[to - from];
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            if (ids[i] != 0 && heights[i] > height) {
+                keys[n++] = key(heights[i], ids[i]);
+            }
+        }
+        return Arrays.copyOf(keys, n);
+    }
+
+    // по цвету: количество, суммы height, id и locationId
+    private long[][] checksums(int from, int to) {
+        long[][] sums = new long[COLORS.length][4];
+        for (int i = from; i < to; i++) {
+            if (ids[i] != 0) {
+                long[] s = sums[hairColors[i]];
+                s[0]++;
+                s[1] += heights[i];
+                s[2] += ids[i];
+                s[3] += locationIds[i];
+            }
+        }
+        return sums;
+    }
+
+    private static long[][] add(long[][] a, long[][] b) {
+        long[][] sum = new long[a.length][];
+        for (int c = 0; c < a.length; c++) {
+            sum[c] = new long[a[c].length];
+            for (int k = 0; k < a[c].length; k++) {
+                sum[c][k] = a[c][k] + b[c][k];
+            }
+        }
+        return sum;
+    }
+
+    private static long[] concat(long[][] parts) {
+        int n = 0;
+        for (long[] part : parts) {
+            n += part.length;
+        }
+        long[] all = new long[n];
+        int at = 0;
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, all, at, part.length);
+            at += part.length;
+        }
+        return all;
+    }
+
+    private static void siftUp(long[] heap, int i) {
+        long key = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] >= key) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = key;
+    }
+
+    private static void siftDown(long[] heap, int n) {
+        long key = heap[0];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n) {
+                break;
+            }
+            if (child + 1 < n && heap[child + 1] > heap[child]) {
+                child++;
+            }
+            if (heap[child] <= key) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = key;
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Компактный столбцовый формат выгрузки (.pcol). Строки копятся группами по {@link #GROUP_ROWS}
+ * и пишутся столбец за столбцом, так что однотипные значения лежат рядом и хорошо сжимаются gzip.
+ * Числа big-endian, varint - LEB128, zigzag - для знаковых значений.
+ * <pre>
+ * файл    := "PCOL" версия:u8 словарь(Color) словарь(Country) группа* 0:i32
+ * словарь := n:u8 (имя:utf)*         - порядковые номера enum в строках ссылаются на него
+ * группа  := строк:i32 столбцы
+ * столбцы := id          zigzag-varint разности с предыдущим id в группе
+ *            creationDate zigzag-varint разности epoch millis
+ *            height      varint
+ *            eyeColor, hairColor, nationality - u8 на строку
+ *            name        varint длина + UTF-8
+ *            birthday    битовая маска наличия + zigzag-varint epochDay присутствующих
+ *            coordinates x:f32 на строку, затем y:f32 на строку
+ *            location    битовая маска наличия + x:f64, y, z: zigzag-varint присутствующих
+ * </pre>
+ */
+class PersonColumnarWriter implements PersonExportService.RowWriter {
+    static final byte[] MAGIC = {'P', 'C', 'O', 'L'};
+    static final int VERSION = 1;
+    static final int GROUP_ROWS = 4096;
+
+    private final DataOutputStream out;
+
+    private final int[] ids = new int[GROUP_ROWS];
+    private final long[] created = new long[GROUP_ROWS];
+    private final int[] heights = new int[GROUP_ROWS];
+    private final byte[] eyeColors = new byte[GROUP_ROWS];
+    private final byte[] hairColors = new byte[GROUP_ROWS];
+    private final byte[] nationalities = new byte[GROUP_ROWS];
+    private final String[] names = new String[GROUP_ROWS];
+    private final long[] birthdays = new long[GROUP_ROWS];
+    private final boolean[] hasBirthday = new boolean[GROUP_ROWS];
+    private final float[] coordinatesX = new float[GROUP_ROWS];
+    private final float[] coordinatesY = new float[GROUP_ROWS];
+    private final boolean[] hasLocation = new boolean[GROUP_ROWS];
+    private final double[] locationX = new double[GROUP_ROWS];
+    private final int[] locationY = new int[GROUP_ROWS];
+    private final int[] locationZ = new int[GROUP_ROWS];
+    private int rows;
+
+    PersonColumnarWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        this.out.write(MAGIC);
+        this.out.writeByte(VERSION);
+        dictionary(Color.values());
+        dictionary(Country.values());
+    }
+
+    @Override
+    public void write(Person p) throws IOException {
+        int i = rows;
+        ids[i] = p.getId();
+        created[i] = p.getCreationDate().toInstant().toEpochMilli();
+        heights[i] = p.getHeight();
+        eyeColors[i] = (byte) p.getEyeColor().ordinal();
+        hairColors[i] = (byte) p.getHairColor().ordinal();
+        nationalities[i] = (byte) p.getNationality().ordinal();
+        names[i] = p.getName();
+        hasBirthday[i] = p.getBirthday() != null;
+        birthdays[i] = hasBirthday[i] ? PersonPatch.localDate(p.getBirthday()).toEpochDay() : 0;
+        coordinatesX[i] = p.getCoordinates().getX();
+        coordinatesY[i] = p.getCoordinates().getY();
+        Location l = p.getLocation();
+        hasLocation[i] = l != null;
+        if (l != null) {
+            locationX[i] = l.getX();
+            locationY[i] = l.getY();
+            locationZ[i] = l.getZ();
+        }
+        if (++rows == GROUP_ROWS) {
+            flushGroup();
+        }
+    }
+
+    // дописывает последнюю группу и конец файла; сам поток не закрывается
+    @Override
+    public void close() throws IOException {
+        flushGroup();
+        out.writeInt(0);
+        out.flush();
+    }
+
+    private void flushGroup() throws IOException {
+        if (rows == 0) {
+            return;
+        }
+        out.writeInt(rows);
+
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            zigzag(ids[i] - previous);
+            previous = ids[i];
+        }
+        previous = 0;
+        for (int i = 0; i < rows; i++) {
+            zigzag(created[i] - previous);
+            previous = created[i];
+        }
+        for (int i = 0; i < rows; i++) {
+            varint(heights[i]);
+        }
+        out.write(eyeColors, 0, rows);
+        out.write(hairColors, 0, rows);
+        out.write(nationalities, 0, rows);
+        for (int i = 0; i < rows; i++) {
+            byte[] name = names[i].getBytes(StandardCharsets.UTF_8);
+            varint(name.length);
+            out.write(name);
+            names[i] = null;
+        }
+
+        bitmap(hasBirthday);
+        for (int i = 0; i < rows; i++) {
+            if (hasBirthday[i]) zigzag(birthdays[i]);
+        }
+
+        for (int i = 0; i < rows; i++) out.writeFloat(coordinatesX[i]);
+        for (int i = 0; i < rows; i++) out.writeFloat(coordinatesY[i]);
+
+        bitmap(hasLocation);
+        for (int i = 0; i < rows; i++) {
+            if (hasLocation[i]) out.writeDouble(locationX[i]);
+        }
+        for (int i = 0; i < rows; i++) {
+            if (hasLocation[i]) zigzag(locationY[i]);
+        }
+        for (int i = 0; i < rows; i++) {
+            if (hasLocation[i]) zigzag(locationZ[i]);
+        }
+        rows = 0;
+    }
+
+    private void dictionary(Enum<?>[] values) throws IOException {
+        out.writeByte(values.length);
+        for (Enum<?> value : values) {
+            out.writeUTF(value.name());
+        }
+    }
+
+    private void bitmap(boolean[] present) throws IOException {
+        for (int i = 0; i < rows; i += 8) {
+            int bits = 0;
+            for (int b = 0; b < 8 && i + b < rows; b++) {
+                if (present[i + b]) bits |= 1 << b;
+            }
+            out.writeByte(bits);
+        }
+    }
+
+    private void zigzag(long value) throws IOException {
+        varint((value << 1) ^ (value >> 63));
+    }
+
+    private void varint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.Color;
+import com.example.islab1.repo.PersonColumnChecksum;
+import com.example.islab1.repo.PersonColumnRow;
+import com.example.islab1.repo.PersonHeightRow;
+import com.example.islab1.repo.PersonRepository;
+import com.example.islab1.repo.ReplicaRouting;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Колоночный снимок person ({@link PersonColumnStore}) для аналитики /ops без JPA-сущностей.
+ * Включается islab1.columnar.enabled. Загружается в фоне при старте и после массовых операций,
+ * между загрузками правится событиями после коммита; по расписанию сверяется с БД контрольными
+ * суммами и при расхождении перечитывается. Пока снимка нет, PersonService идёт в БД.
+ */
+@Component
+public class PersonColumns {
+    private static final Logger log = LoggerFactory.getLogger(PersonColumns.class);
+    // строк на порцию потоковой выдачи: блокировка чтения не держится, пока клиент читает ответ
+    private static final int EMIT_BATCH = 1000;
+
+    private final PersonRepository repo;
+    private final TransactionTemplate readOnlyTx;
+    private final boolean enabled;
+    private final ExecutorService loader;
+    private final AtomicBoolean reloadQueued = new AtomicBoolean();
+    private final AtomicLong lastDrift = new AtomicLong();
+    // запросы делят снимок, правки меняют его на месте
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile PersonColumnStore store;
+    // события, пришедшие во время загрузки: повторяются на новом снимке перед заменой; под lock
+    private List<PersonChangeEvent> duringLoad;
+
+    public PersonColumns(PersonRepository repo,
+                         PlatformTransactionManager transactionManager,
+                         MeterRegistry registry,
+                         @Value("${islab1.columnar.enabled:false}") boolean enabled) {
+        this.repo = repo;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.enabled = enabled;
+        this.loader = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "person-columns-load");
+            t.setDaemon(true);
+            return t;
+        });
+        Gauge.builder("persons.columns.size", this, PersonColumns::size)
+                .description("Строк в колоночном снимке")
+                .register(registry);
+        Gauge.builder("persons.columns.drift", lastDrift, AtomicLong::get)
+                .description("Расхождение колоночного снимка с БД при последней сверке")
+                .register(registry);
+    }
+
+    public boolean isReady() { return store != null; }
+
+    public int size() {
+        return isReady() ? read(PersonColumnStore::size) : 0;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        if (enabled && reloadQueued.compareAndSet(false, true)) {
+            loader.execute(() -> {
+                reloadQueued.set(false);
+                load();
+            });
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPersonChange(PersonChangeEvent event) {
+        if (!enabled) {
+            return;
+        }
+        switch (event.type()) {
+            case CREATED, UPDATED, DELETED -> {
+                lock.writeLock().lock();
+                try {
+                    if (store != null) {
+                        apply(store, event);
+                    }
+                    if (duringLoad != null) {
+                        duringLoad.add(event);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            // какие строки затронуты, неизвестно
+            case BULK_DELETED, BULK_IMPORTED -> reload();
+        }
+    }
+
+    // снимок свой на каждом узле - чужие правки приходят через outbox
+    @EventListener
+    public void onRelayed(RelayedPersonChange change) {
+        if (!change.local()) {
+            onPersonChange(change.event());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${islab1.columnar.verify-interval:PT10M}",
+            fixedDelayString = "${islab1.columnar.verify-interval:PT10M}")
+    public void verify() {
+        if (!enabled) {
+            return;
+        }
+        if (!isReady()) {
+            reload();
+            return;
+        }
+        List<PersonColumnChecksum> expected = ReplicaRouting.onPrimary(repo::columnChecksums);
+        long drift = read(s -> s.drift(expected));
+        lastDrift.set(drift);
+        if (drift == 0) {
+            log.debug("Person columns match the database");
+            return;
+        }
+        // правка между запросом к БД и проходом по снимку тоже даёт расхождение - перечитать дешевле, чем разбираться
+        log.warn("Person columns drifted from the database by {}, reloading", drift);
+        reload();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        loader.shutdownNow();
+    }
+
+    public List<Integer> distinctHeightsAfter(int after, int limit) {
+        return read(s -> s.distinctHeightsAfter(after, limit));
+    }
+
+    public void forEachDistinctHeight(IntConsumer sink) {
+        for (int height : read(PersonColumnStore::distinctHeights)) {
+            sink.accept(height);
+        }
+    }
+
+    public List<PersonHeightRow> heightRowsAfter(int height, int afterHeight, int afterId, int limit) {
+        return read(s -> s.heightRowsAfter(height, afterHeight, afterId, limit));
+    }
+
+    // порядок фиксируется в начале, строки читаются порциями - правки между порциями видны как в курсоре БД
+    public void forEachHeightGreaterThan(int height, Consumer<PersonHeightRow> sink) {
+        long[] keys = read(s -> s.heightKeysGreaterThan(height));
+        for (int from = 0; from < keys.length; from += EMIT_BATCH) {
+            int start = from;
+            int end = Math.min(keys.length, from + EMIT_BATCH);
+            read(s -> s.rows(keys, start, end)).forEach(sink);
+        }
+    }
+
+    public double hairColorShare(Color hairColor) {
+        return read(s -> s.hairColorShare(hairColor));
+    }
+
+    public long countHairColorInLocation(Color hairColor, long locationId) {
+        return read(s -> s.countHairColorInLocation(hairColor, locationId));
+    }
+
+    private <T> T read(Function<PersonColumnStore, T> query) {
+        lock.readLock().lock();
+        try {
+            return query.apply(store);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // только из потока loader
+    private void load() {
+        long started = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            duringLoad = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        PersonColumnStore next;
+        try {
+            // события уже пришли после коммита на primary - реплика их может ещё не видеть
+            next = ReplicaRouting.onPrimary(() -> readOnlyTx.execute(status -> {
+                PersonColumnStore s = new PersonColumnStore(isReady() ? store.size() : 1024);
+                try (Stream<PersonColumnRow> rows = repo.streamColumnRows()) {
+                    rows.forEach(r -> s.put(r.id(), r.name(), r.height(), r.hairColor(), r.locationId()));
+                }
+                return s;
+            }));
+        } catch (RuntimeException ex) {
+            lock.writeLock().lock();
+            try {
+                duringLoad = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.warn("Failed to load person columns, /ops keeps the previous snapshot", ex);
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            // повтор идемпотентен: строка получает состояние из последнего события о ней
+            duringLoad.forEach(e -> apply(next, e));
+            duringLoad = null;
+            store = next;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Person columns loaded: {} rows in {} ms", next.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private static void apply(PersonColumnStore s, PersonChangeEvent event) {
+        PersonRow row = event.person();
+        switch (event.type()) {
+            case CREATED, UPDATED -> s.put(row.id(), row.name(), row.height(), row.hairColor(), row.locationId());
+            case DELETED -> s.remove(event.id());
+            case BULK_DELETED, BULK_IMPORTED -> { }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.islab1.service;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Непрозрачный курсор для keyset-пагинации: поле и направление сортировки,
+ * направление прокрутки, id и значение ключа сортировки последней строки.
+ */
+final class PersonCursor {
+    static final Set<String> SORTABLE = Set.of("id", "name", "height", "creationDate");
+
+    private static final String VERSION = "v1";
+    private static final String SEPARATOR = ";";
+
+    private final String sortField;
+    private final boolean descending;
+    private final boolean backward;
+    private final Integer id;
+    private final Object value;
+
+    private PersonCursor(String sortField, boolean descending, boolean backward, Integer id, Object value) {
+        this.sortField = sortField;
+        this.descending = descending;
+        this.backward = backward;
+        this.id = id;
+        this.value = value;
+    }
+
+    static PersonCursor at(ScrollPosition position, String sortField, boolean descending, boolean backward) {
+        Map<String, ?> keys = ((KeysetScrollPosition) position).getKeys();
+        return new PersonCursor(sortField, descending, backward, (Integer) keys.get("id"), keys.get(sortField));
+    }
+
+    static PersonCursor decode(String token, String sortField, boolean descending) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("malformed cursor", ex);
+        }
+        // значение последним: имя может содержать разделитель
+        String[] parts = raw.split(SEPARATOR, 6);
+        if (parts.length < 5 || !VERSION.equals(parts[0])) {
+            throw new IllegalArgumentException("malformed cursor");
+        }
+        if (!parts[1].equals(sortField) || Boolean.parseBoolean(parts[2]) != descending) {
+            throw new IllegalArgumentException("cursor does not match requested sort " + sortField);
+        }
+        try {
+            Integer id = Integer.valueOf(parts[4]);
+            Object value = "id".equals(sortField) ? id : parseValue(sortField, parts.length == 6 ? parts[5] : "");
+            return new PersonCursor(sortField, descending, "B".equals(parts[3]), id, value);
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("malformed cursor", ex);
+        }
+    }
+
+    String encode() {
+        StringBuilder raw = new StringBuilder()
+                .append(VERSION).append(SEPARATOR)
+                .append(sortField).append(SEPARATOR)
+                .append(descending).append(SEPARATOR)
+                .append(backward ? "B" : "F").append(SEPARATOR)
+                .append(id);
+        if (!"id".equals(sortField)) {
+            raw.append(SEPARATOR).append(value);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    boolean isBackward() { return backward; }
+
+    PersonCursor reversed() {
+        return new PersonCursor(sortField, descending, !backward, id, value);
+    }
+
+    KeysetScrollPosition toScrollPosition() {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        if (!"id".equals(sortField)) {
+            keys.put(sortField, value);
+        }
+        keys.put("id", id);
+        return backward ? ScrollPosition.backward(keys) : ScrollPosition.forward(keys);
+    }
+
+    private static Object parseValue(String sortField, String raw) {
+        return switch (sortField) {
+            case "name" -> raw;
+            case "height" -> Integer.valueOf(raw);
+            case "creationDate" -> ZonedDateTime.parse(raw);
+            default -> throw new IllegalArgumentException("unsupported sort field " + sortField);
+        };
+    }
+}
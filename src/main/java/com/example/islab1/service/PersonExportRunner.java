@@ -0,0 +1,81 @@
+package com.example.islab1.service;
+
+import com.example.islab1.repo.PersonFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Выгрузка из командной строки (ночной экспорт), после неё приложение завершается:
+ * <pre>
+ * java -jar is-lab1.jar --islab1.export.out=/backup/persons.pcol.gz [--islab1.export.format=columnar]
+ *     [--nationality=USA --heightMin=150 ...]
+ * </pre>
+ * Формат по умолчанию - CSV, gzip включается суффиксом .gz. Файл пишется во временный рядом
+ * и переименовывается в конце, так что оборванная выгрузка не подменит предыдущую.
+ */
+@Component
+@ConditionalOnProperty("islab1.export.out")
+public class PersonExportRunner implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(PersonExportRunner.class);
+
+    private final PersonExportService exportService;
+    private final ConfigurableApplicationContext context;
+    private final Path target;
+    private final PersonExportService.Format format;
+
+    public PersonExportRunner(PersonExportService exportService,
+                              ConfigurableApplicationContext context,
+                              @Value("${islab1.export.out}") String target,
+                              @Value("${islab1.export.format:csv}") String format) {
+        this.exportService = exportService;
+        this.context = context;
+        this.target = Path.of(target).toAbsolutePath();
+        this.format = PersonExportService.Format.parse(format);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Map<String, String> params = new HashMap<>();
+        for (String name : PersonFilter.PARAMS) {
+            List<String> values = args.getOptionValues(name);
+            if (values != null && !values.isEmpty()) {
+                params.put(name, values.get(0));
+            }
+        }
+        PersonFilter filter = PersonFilter.parse(params);
+        boolean gzip = target.getFileName().toString().endsWith(".gz");
+
+        int exitCode = 0;
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        try {
+            long rows;
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(partial))) {
+                rows = exportService.export(filter, format, gzip, out);
+            }
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Export written to {}: {} rows", target, rows);
+        } catch (Exception ex) {
+            log.error("Export to {} failed", target, ex);
+            Files.deleteIfExists(partial);
+            exitCode = 1;
+        }
+        int code = exitCode;
+        System.exit(SpringApplication.exit(context, () -> code));
+    }
+}
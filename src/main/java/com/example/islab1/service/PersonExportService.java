@@ -0,0 +1,240 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.*;
+import com.example.islab1.repo.PersonFilter;
+import com.example.islab1.repo.PersonSpecifications;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.CacheStoreMode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+/**
+ * Выгрузка persons с coordinates и location. Строки читаются курсором БД порциями по fetch size
+ * и сразу отсоединяются, так что память не зависит от размера таблицы. Столбцы CSV и поля NDJSON
+ * совпадают с импортом (плюс id и creationDate), выгрузку можно загрузить обратно.
+ */
+@Service
+public class PersonExportService {
+    private static final Logger log = LoggerFactory.getLogger(PersonExportService.class);
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson"),
+        COLUMNAR("application/octet-stream", "pcol");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() { return contentType; }
+        public String extension() { return extension; }
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.strip().toUpperCase());
+            } catch (RuntimeException ex) {
+                throw new IllegalArgumentException("unsupported export format " + value, ex);
+            }
+        }
+    }
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    public PersonExportService(ObjectMapper objectMapper,
+                               @Value("${islab1.export.fetch-size:1000}") int fetchSize) {
+        this.objectMapper = objectMapper;
+        this.fetchSize = Math.max(fetchSize, 1);
+    }
+
+    /**
+     * Пишет все строки под filter в out в порядке id и возвращает их число. out не закрывается,
+     * gzip-обёртка (если есть) завершается.
+     */
+    @Transactional(readOnly = true)
+    public long export(PersonFilter filter, Format format, boolean gzip, OutputStream out) throws IOException {
+        PersonFilter criteria = filter == null ? PersonFilter.NONE : filter;
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, 64 * 1024) : null;
+        OutputStream target = compressed != null ? compressed : out;
+
+        long rows = 0;
+        try (Stream<Person> persons = stream(criteria);
+             RowWriter writer = writer(format, target)) {
+            for (Iterator<Person> it = persons.iterator(); it.hasNext(); ) {
+                Person p = it.next();
+                writer.write(p);
+                // каскад DETACH уносит и coordinates/location - контекст не растёт
+                em.detach(p);
+                rows++;
+            }
+        }
+        if (compressed != null) {
+            compressed.finish();
+        }
+        target.flush();
+        log.info("Exported persons format={} gzip={} rows={} filter={}", format, gzip, rows, criteria.describe());
+        return rows;
+    }
+
+    private Stream<Person> stream(PersonFilter filter) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Person> query = cb.createQuery(Person.class);
+        Root<Person> root = query.from(Person.class);
+        root.fetch("coordinates");
+        root.fetch("location", JoinType.LEFT);
+        Predicate where = PersonSpecifications.matching(filter).toPredicate(root, query, cb);
+        if (where != null) {
+            query.where(where);
+        }
+        query.orderBy(cb.asc(root.get("id")));
+
+        return em.createQuery(query)
+                .setHint(HINT_FETCH_SIZE, fetchSize)
+                .setHint(HINT_READ_ONLY, true)
+                // разовый проход по всей таблице не должен вытеснять рабочий набор кэша второго уровня
+                .setHint("jakarta.persistence.cache.retrieveMode", CacheRetrieveMode.BYPASS)
+                .setHint("jakarta.persistence.cache.storeMode", CacheStoreMode.BYPASS)
+                .getResultStream();
+    }
+
+    private RowWriter writer(Format format, OutputStream out) throws IOException {
+        return switch (format) {
+            case CSV -> new CsvWriter(out);
+            case NDJSON -> new NdjsonWriter(objectMapper, out);
+            case COLUMNAR -> new PersonColumnarWriter(out);
+        };
+    }
+
+    interface RowWriter extends Closeable {
+        void write(Person p) throws IOException;
+    }
+
+    private static final class CsvWriter implements RowWriter {
+        private final Writer out;
+
+        CsvWriter(OutputStream out) throws IOException {
+            this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            this.out.write("id,creationDate," + String.join(",", PersonImportRecord.CSV_COLUMNS) + "\n");
+        }
+
+        @Override
+        public void write(Person p) throws IOException {
+            Coordinates c = p.getCoordinates();
+            Location l = p.getLocation();
+            out.write(Integer.toString(p.getId()));
+            out.write(',');
+            out.write(p.getCreationDate().toOffsetDateTime().toString());
+            out.write(',');
+            out.write(csv(p.getName()));
+            out.write(',');
+            out.write(Integer.toString(p.getHeight()));
+            out.write(',');
+            out.write(p.getEyeColor().name());
+            out.write(',');
+            out.write(p.getHairColor().name());
+            out.write(',');
+            out.write(p.getNationality().name());
+            out.write(',');
+            out.write(p.getBirthday() != null ? PersonPatch.localDate(p.getBirthday()).toString() : "");
+            out.write(',');
+            out.write(Float.toString(c.getX()));
+            out.write(',');
+            out.write(Float.toString(c.getY()));
+            out.write(',');
+            if (l != null) {
+                out.write(Double.toString(l.getX()));
+                out.write(',');
+                out.write(Integer.toString(l.getY()));
+                out.write(',');
+                out.write(Integer.toString(l.getZ()));
+            } else {
+                out.write(",,");
+            }
+            out.write('\n');
+        }
+
+        // буфер сбрасывается, но поток под ним закрывает вызывающий
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+
+        private static String csv(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                    && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    // поля пишутся генератором напрямую, без промежуточного объекта на строку
+    private static final class NdjsonWriter implements RowWriter {
+        private final JsonGenerator json;
+
+        NdjsonWriter(ObjectMapper objectMapper, OutputStream out) throws IOException {
+            this.json = objectMapper.getFactory().createGenerator(out)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.json.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(Person p) throws IOException {
+            Coordinates c = p.getCoordinates();
+            Location l = p.getLocation();
+            json.writeStartObject();
+            json.writeNumberField("id", p.getId());
+            json.writeStringField("creationDate", p.getCreationDate().toOffsetDateTime().toString());
+            json.writeStringField("name", p.getName());
+            json.writeNumberField("height", p.getHeight());
+            json.writeStringField("eyeColor", p.getEyeColor().name());
+            json.writeStringField("hairColor", p.getHairColor().name());
+            json.writeStringField("nationality", p.getNationality().name());
+            if (p.getBirthday() != null) {
+                json.writeStringField("birthday", PersonPatch.localDate(p.getBirthday()).toString());
+            }
+            json.writeNumberField("coordinatesX", c.getX());
+            json.writeNumberField("coordinatesY", c.getY());
+            if (l != null) {
+                json.writeNumberField("locationX", l.getX());
+                json.writeNumberField("locationY", l.getY());
+                json.writeNumberField("locationZ", l.getZ());
+            }
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            json.close();
+        }
+    }
+}
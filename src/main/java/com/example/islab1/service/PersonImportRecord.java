@@ -0,0 +1,102 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// одна запись импорта: плоский набор полей, одинаковый для CSV и JSON-lines
+public record PersonImportRecord(String name,
+                                 Integer height,
+                                 Color eyeColor,
+                                 Color hairColor,
+                                 Country nationality,
+                                 LocalDate birthday,
+                                 Float coordinatesX,
+                                 Float coordinatesY,
+                                 Double locationX,
+                                 Integer locationY,
+                                 Integer locationZ) {
+
+    public static final List<String> CSV_COLUMNS = List.of("name", "height", "eyeColor", "hairColor", "nationality",
+            "birthday", "coordinatesX", "coordinatesY", "locationX", "locationY", "locationZ");
+
+    static PersonImportRecord fromCsv(Map<String, Integer> header, List<String> values) {
+        return new PersonImportRecord(
+                column(header, values, "name"),
+                parse(column(header, values, "height"), Integer::valueOf),
+                parse(column(header, values, "eyeColor"), v -> Color.valueOf(v.toUpperCase())),
+                parse(column(header, values, "hairColor"), v -> Color.valueOf(v.toUpperCase())),
+                parse(column(header, values, "nationality"), v -> Country.valueOf(v.toUpperCase())),
+                parse(column(header, values, "birthday"), LocalDate::parse),
+                parse(column(header, values, "coordinatesX"), Float::valueOf),
+                parse(column(header, values, "coordinatesY"), Float::valueOf),
+                parse(column(header, values, "locationX"), Double::valueOf),
+                parse(column(header, values, "locationY"), Integer::valueOf),
+                parse(column(header, values, "locationZ"), Integer::valueOf));
+    }
+
+    Person toPerson() {
+        if (height == null) throw new IllegalArgumentException("height is required");
+        if (coordinatesX == null) throw new IllegalArgumentException("coordinatesX is required");
+
+        Person p = new Person();
+        p.setName(name);
+        p.setHeight(height);
+        p.setEyeColor(eyeColor);
+        p.setHairColor(hairColor);
+        p.setNationality(nationality);
+        p.setBirthday(birthday != null ? java.sql.Date.valueOf(birthday) : null);
+        p.setCoordinates(new Coordinates(coordinatesX, coordinatesY));
+        if (locationX != null || locationY != null || locationZ != null) {
+            // как в форме: location либо целиком, либо нет - недостающая координата не становится нулём
+            if (locationX == null || locationY == null || locationZ == null) {
+                throw new IllegalArgumentException("locationX, locationY and locationZ are required together");
+            }
+            p.setLocation(new Location(locationX, locationY, locationZ));
+        }
+        return p;
+    }
+
+    static List<String> splitCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private static String column(Map<String, Integer> header, List<String> values, String name) {
+        Integer index = header.get(name);
+        if (index == null || index >= values.size()) return null;
+        String value = values.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static <T> T parse(String value, Function<String, T> parser) {
+        return value == null ? null : parser.apply(value);
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.Person;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Массовая загрузка persons из CSV или JSON-lines. Вход читается по записи, в памяти держится
+ * только текущий батч; каждый батч - отдельная короткая транзакция с JDBC-батчингом.
+ */
+@Service
+public class PersonImportService {
+    private static final Logger log = LoggerFactory.getLogger(PersonImportService.class);
+
+    public enum Format { CSV, JSON_LINES }
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final TransactionTemplate tx;
+    private final Validator validator;
+    private final ObjectReader jsonReader;
+    private final ApplicationEventPublisher events;
+    private final int batchSize;
+    private final int maxReportedRejects;
+
+    public PersonImportService(TransactionTemplate tx,
+                               Validator validator,
+                               ObjectMapper objectMapper,
+                               ApplicationEventPublisher events,
+                               @Value("${islab1.import.batch-size:500}") int batchSize,
+                               @Value("${islab1.import.max-reported-rejects:100}") int maxReportedRejects) {
+        this.tx = tx;
+        this.validator = validator;
+        this.jsonReader = objectMapper.readerFor(PersonImportRecord.class);
+        this.events = events;
+        this.batchSize = Math.max(batchSize, 1);
+        this.maxReportedRejects = maxReportedRejects;
+    }
+
+    public ImportReport importPersons(InputStream in, Format format) throws IOException {
+        Progress progress = new Progress();
+        List<NumberedRecord> batch = new ArrayList<>(batchSize);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+        Map<String, Integer> header = null;
+        CsvRecords csv = new CsvRecords(reader);
+        String line;
+        long lineNumber = 0;
+        while ((line = format == Format.CSV ? csv.next() : reader.readLine()) != null) {
+            lineNumber = format == Format.CSV ? csv.startLine() : lineNumber + 1;
+            if (line.isBlank()) {
+                continue;
+            }
+            if (format == Format.CSV && header == null) {
+                header = parseHeader(line);
+                continue;
+            }
+            try {
+                PersonImportRecord record;
+                if (format == Format.CSV) {
+                    record = PersonImportRecord.fromCsv(header, PersonImportRecord.splitCsvLine(line));
+                } else {
+                    record = jsonReader.readValue(line);
+                }
+                String violations = validate(record.toPerson());
+                if (violations != null) {
+                    progress.reject(lineNumber, violations);
+                    continue;
+                }
+                batch.add(new NumberedRecord(lineNumber, record));
+            } catch (IOException | RuntimeException ex) {
+                progress.reject(lineNumber, NestedExceptionUtils.getMostSpecificCause(ex).getMessage());
+                continue;
+            }
+            if (batch.size() >= batchSize) {
+                persistBatch(batch, progress);
+            }
+        }
+        persistBatch(batch, progress);
+
+        // одно уведомление на весь импорт вместо события на каждую строку
+        if (progress.accepted > 0) {
+            events.publishEvent(PersonChangeEvent.bulkImported());
+        }
+        log.info("Imported persons format={} accepted={} rejected={}", format, progress.accepted, progress.rejected);
+        return new ImportReport(progress.accepted, progress.rejected, progress.rejects);
+    }
+
+    private void persistBatch(List<NumberedRecord> batch, Progress progress) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            tx.executeWithoutResult(status -> persistAll(batch));
+            progress.accepted += batch.size();
+        } catch (RuntimeException ex) {
+            // ошибка БД откатывает весь батч - повторяем по одной записи, чтобы отбраковать только виновные
+            log.warn("Import batch of {} records failed, retrying one by one: {}", batch.size(), ex.getMessage());
+            for (NumberedRecord item : batch) {
+                try {
+                    tx.executeWithoutResult(status -> persistAll(List.of(item)));
+                    progress.accepted++;
+                } catch (RuntimeException rowEx) {
+                    progress.reject(item.line(), NestedExceptionUtils.getMostSpecificCause(rowEx).getMessage());
+                }
+            }
+        }
+        batch.clear();
+    }
+
+    private void persistAll(List<NumberedRecord> items) {
+        em.unwrap(Session.class).setJdbcBatchSize(batchSize);
+        for (NumberedRecord item : items) {
+            // сущность собирается заново: после отката у старой уже был бы id
+            em.persist(item.record().toPerson());
+        }
+        em.flush();
+        em.clear();
+    }
+
+    private String validate(Person p) {
+        Set<ConstraintViolation<?>> violations = new LinkedHashSet<>();
+        violations.addAll(validator.validate(p));
+        violations.addAll(validator.validate(p.getCoordinates()));
+        if (p.getLocation() != null) {
+            violations.addAll(validator.validate(p.getLocation()));
+        }
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .collect(Collectors.joining("; "));
+    }
+
+    private static Map<String, Integer> parseHeader(String line) {
+        Map<String, Integer> header = new HashMap<>();
+        List<String> columns = PersonImportRecord.splitCsvLine(line);
+        for (int i = 0; i < columns.size(); i++) {
+            header.put(columns.get(i).trim(), i);
+        }
+        if (!header.keySet().containsAll(List.of("name", "height", "coordinatesX", "coordinatesY"))) {
+            throw new IllegalArgumentException("CSV header must contain " + PersonImportRecord.CSV_COLUMNS);
+        }
+        return header;
+    }
+
+    private record NumberedRecord(long line, PersonImportRecord record) {
+    }
+
+    // записи CSV по одной: перевод строки внутри кавычек - часть значения, так пишет и выгрузка
+    private static final class CsvRecords {
+        private final BufferedReader reader;
+        private long lines;
+        private long startLine;
+
+        CsvRecords(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        // номер строки файла, с которой началась последняя запись
+        long startLine() { return startLine; }
+
+        String next() throws IOException {
+            StringBuilder record = new StringBuilder();
+            boolean quoted = false;
+            startLine = lines + 1;
+            int c;
+            while ((c = reader.read()) >= 0) {
+                if (!quoted && (c == '\n' || c == '\r')) {
+                    lines++;
+                    if (c == '\r') {
+                        reader.mark(1);
+                        if (reader.read() != '\n') {
+                            reader.reset();
+                        }
+                    }
+                    return record.toString();
+                }
+                if (c == '"') {
+                    // "" внутри кавычек переключает дважды
+                    quoted = !quoted;
+                } else if (c == '\n') {
+                    lines++;
+                }
+                record.append((char) c);
+            }
+            return record.isEmpty() ? null : record.toString();
+        }
+    }
+
+    private final class Progress {
+        long accepted;
+        long rejected;
+        final List<ImportReport.Reject> rejects = new ArrayList<>();
+
+        void reject(long line, String message) {
+            rejected++;
+            if (rejects.size() < maxReportedRejects) {
+                rejects.add(new ImportReport.Reject(line, message));
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.islab1.service;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Сбрасывает кэш страниц списка на те же события, что уходят клиентам по WebSocket.
+ * Любое изменение может сдвинуть любую страницу, поэтому кэш очищается целиком.
+ * Сущности в кэше второго уровня Hibernate инвалидирует сам, чужие изменения - PersonChangeOutbox.
+ */
+@Component
+public class PersonPageCacheInvalidator {
+    private final CacheManager cacheManager;
+
+    public PersonPageCacheInvalidator(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    // после коммита: иначе параллельное чтение успело бы закэшировать ещё старые данные
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPersonChange(PersonChangeEvent event) {
+        Cache pages = cacheManager.getCache(PersonService.PAGES_CACHE);
+        if (pages != null) {
+            pages.clear();
+        }
+    }
+
+    // у каждого узла свой кэш страниц: чистим и по изменениям, пришедшим через outbox
+    @EventListener
+    public void onRelayed(RelayedPersonChange change) {
+        if (!change.local()) {
+            onPersonChange(change.event());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.*;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Optional;
+
+/**
+ * Частичное изменение Person (JSON merge patch): null - поле не менять. Для полей, которые можно
+ * очистить, Optional отличает отсутствие поля (null) от явного null в JSON (Optional.empty()) -
+ * при чтении отсутствующего Optional как null, см. {@link com.example.islab1.IsLab1Application}.
+ * location сливается с текущим: не переданные координаты остаются прежними.
+ */
+public record PersonPatch(String name,
+                          Float coordinatesX,
+                          Float coordinatesY,
+                          Color eyeColor,
+                          Color hairColor,
+                          Integer height,
+                          Optional<LocalDate> birthday,
+                          Country nationality,
+                          Optional<LocationValue> location) {
+
+    public record LocationValue(Double x, Integer y, Integer z) {}
+
+    // полное состояние из формы редактирования
+    public static PersonPatch of(Person p) {
+        Coordinates c = p.getCoordinates();
+        if (c == null) {
+            throw new IllegalArgumentException("coordinates must be provided for update");
+        }
+        Location l = p.getLocation();
+        return new PersonPatch(
+                p.getName(),
+                c.getX(),
+                c.getY(),
+                p.getEyeColor(),
+                p.getHairColor(),
+                p.getHeight(),
+                Optional.ofNullable(localDate(p.getBirthday())),
+                p.getNationality(),
+                Optional.ofNullable(l).map(loc -> new LocationValue(loc.getX(), loc.getY(), loc.getZ())));
+    }
+
+    // из БД приходит java.sql.Date, из формы - java.util.Date на полночь локальной зоны
+    static LocalDate localDate(Date date) {
+        if (date == null) {
+            return null;
+        }
+        return date instanceof java.sql.Date sql
+                ? sql.toLocalDate()
+                : date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+}
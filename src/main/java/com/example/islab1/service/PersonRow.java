@@ -0,0 +1,55 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.*;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+
+// плоская проекция строки таблицы, которую получают клиенты
+public record PersonRow(Integer id,
+                        Long version,
+                        String name,
+                        int height,
+                        Color eyeColor,
+                        Color hairColor,
+                        Country nationality,
+                        Float coordinatesX,
+                        Float coordinatesY,
+                        Long locationId,
+                        Double locationX,
+                        Integer locationY,
+                        Integer locationZ,
+                        String birthday,
+                        Long creationDate) {
+
+    public static PersonRow of(Person p) {
+        Coordinates c = p.getCoordinates();
+        Location l = p.getLocation();
+        return new PersonRow(
+                p.getId(),
+                p.getVersion(),
+                p.getName(),
+                p.getHeight(),
+                p.getEyeColor(),
+                p.getHairColor(),
+                p.getNationality(),
+                c != null ? c.getX() : null,
+                c != null ? c.getY() : null,
+                l != null ? l.getId() : null,
+                l != null ? l.getX() : null,
+                l != null ? l.getY() : null,
+                l != null ? l.getZ() : null,
+                p.getBirthday() != null ? new java.sql.Date(p.getBirthday().getTime()).toLocalDate().toString() : null,
+                p.getCreationDate() != null ? p.getCreationDate().toInstant().toEpochMilli() : null);
+    }
+
+    public PersonRow withVersion(Long version) {
+        return new PersonRow(id, version, name, height, eyeColor, hairColor, nationality, coordinatesX, coordinatesY,
+                locationId, locationX, locationY, locationZ, birthday, creationDate);
+    }
+
+    // для шаблонов, как Person.getCreationDateMoscow; не компонент записи - в JSON не попадает
+    public ZonedDateTime creationDateMoscow() {
+        return creationDate == null ? null : Instant.ofEpochMilli(creationDate).atZone(Person.MOSCOW_ZONE);
+    }
+}
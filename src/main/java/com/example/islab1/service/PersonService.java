@@ -1,53 +1,155 @@
 package com.example.islab1.service;
 
 import com.example.islab1.model.*;
+import com.example.islab1.repo.LocationPoint;
+import com.example.islab1.repo.PersonFilter;
+import com.example.islab1.repo.PersonHeightRow;
+import com.example.islab1.repo.PersonNameMatch;
 import com.example.islab1.repo.PersonRepository;
+import com.example.islab1.repo.PersonSpecifications;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PersistenceContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.*;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
 
 @Service
 public class PersonService {
+    // страницы списка; сбрасывается PersonPageCacheInvalidator после каждого изменения
+    public static final String PAGES_CACHE = "personPages";
+    // в кэше страниц только чтения с primary, см. ReadYourWrites.readsFromReplica
+    public static final String PRIMARY_READS = "!@readYourWrites.readsFromReplica()";
+    private static final int MAX_SUGGESTIONS = 20;
+
     private final PersonRepository repo;
+    private final ApplicationEventPublisher events;
+    private final PersonAggregates aggregates;
+    private final PersonColumns columns;
+    private final LocationIndex locations;
+    private final TransactionTemplate tx;
+    private final int maxUpdateAttempts;
+    private final Duration retryBackoff;
     private static final Logger log = LoggerFactory.getLogger(PersonService.class);
 
-    public PersonService(PersonRepository repo) {
+    @PersistenceContext
+    private EntityManager em;
+
+    public PersonService(PersonRepository repo, ApplicationEventPublisher events, PersonAggregates aggregates,
+                         PersonColumns columns,
+                         LocationIndex locations,
+                         TransactionTemplate tx,
+                         @Value("${islab1.update.max-attempts:3}") int maxUpdateAttempts,
+                         @Value("${islab1.update.retry-backoff:20ms}") Duration retryBackoff) {
         this.repo = repo;
+        this.events = events;
+        this.aggregates = aggregates;
+        this.columns = columns;
+        this.locations = locations;
+        this.tx = tx;
+        this.maxUpdateAttempts = Math.max(maxUpdateAttempts, 1);
+        this.retryBackoff = retryBackoff;
     }
 
-    public Page<Person> list(String filterField, String filterValue,
-                             String sortField, String sortDir, int page, int size) {
-        Sort sort = Sort.by((sortField == null || sortField.isBlank())
-                ? "id"
-                : sortField);
-        sort = "desc".equalsIgnoreCase(sortDir) ? sort.descending() : sort.ascending();
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = PAGES_CACHE, key = "{'list', #filter, #sortField, #sortDir, #page, #size}",
+            condition = PRIMARY_READS)
+    public Page<PersonRow> list(PersonFilter filter, String sortField, String sortDir, int page, int size) {
+        String field = sortField(sortField);
+        Sort sort = "desc".equalsIgnoreCase(sortDir) ? Sort.by(field).descending() : Sort.by(field).ascending();
+        if (!"id".equals(field)) {
+            // id вторым ключом: стабильный порядок страниц и индексы (field, id)
+            sort = sort.and(Sort.by(sort.getOrderFor(field).getDirection(), "id"));
+        }
         Pageable pageable = PageRequest.of(Math.max(page, 0), Math.max(size, 1), sort);
+        // в кэш идут неизменяемые строки: отсоединённые сущности делили бы все запросы, попавшие в кэш
+        return repo.findAll(PersonSpecifications.matching(filter), pageable).map(PersonRow::of);
+    }
+
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = PAGES_CACHE,
+            key = "{'scroll', #filter, #sortField, #sortDir, #cursor, #size, #withTotal}",
+            condition = PRIMARY_READS)
+    public CursorPage<PersonRow> scroll(PersonFilter filter, String sortField, String sortDir,
+                                     String cursor, int size, boolean withTotal) {
+        String field = sortField(sortField);
+        boolean descending = "desc".equalsIgnoreCase(sortDir);
+        Sort sort = descending ? Sort.by(field).descending() : Sort.by(field).ascending();
+        PersonCursor position = (cursor == null || cursor.isBlank())
+                ? null
+                : PersonCursor.decode(cursor, field, descending);
+
+        Specification<Person> spec = PersonSpecifications.matching(filter);
+        ScrollPosition start = position == null ? ScrollPosition.keyset() : position.toScrollPosition();
+        Window<Person> window = repo.findBy(PersonSpecifications.fetchingAssociations().and(spec), q -> q
+                .sortBy(sort)
+                .limit(Math.max(size, 1))
+                .scroll(start));
+
+        List<Person> content = window.getContent();
+        String next;
+        String previous;
+        if (position != null && position.isBackward()) {
+            // при обратной прокрутке hasNext() означает, что есть строки ещё раньше
+            previous = window.hasNext() ? PersonCursor.at(window.positionAt(0), field, descending, true).encode() : null;
+            next = content.isEmpty()
+                    ? position.reversed().encode()
+                    : PersonCursor.at(window.positionAt(content.size() - 1), field, descending, false).encode();
+        } else {
+            next = window.hasNext()
+                    ? PersonCursor.at(window.positionAt(content.size() - 1), field, descending, false).encode()
+                    : null;
+            previous = position == null ? null : content.isEmpty()
+                    ? position.reversed().encode()
+                    : PersonCursor.at(window.positionAt(0), field, descending, true).encode();
+        }
 
-        if (filterField == null || filterField.isBlank() || filterValue == null || filterValue.isBlank()) {
-            return repo.findAll(pageable);
+        Long total = withTotal ? repo.count(spec) : null;
+        return new CursorPage<>(content.stream().map(PersonRow::of).toList(), next, previous, total);
+    }
+
+    // сортировка проверяется до запроса, а не падает в Hibernate на неизвестном свойстве
+    private static String sortField(String sortField) {
+        String field = (sortField == null || sortField.isBlank()) ? "id" : sortField;
+        if (!PersonCursor.SORTABLE.contains(field)) {
+            throw new IllegalArgumentException("unsupported sort field " + field);
         }
+        return field;
+    }
 
-        switch (filterField) {
-            case "name":
-                return repo.findByName(filterValue, pageable);
-            case "eyeColor":
-                return repo.findByEyeColor(Color.valueOf(filterValue.toUpperCase()), pageable);
-            case "hairColor":
-                return repo.findByHairColor(Color.valueOf(filterValue.toUpperCase()), pageable);
-            case "nationality":
-                return repo.findByNationality(Country.valueOf(filterValue.toUpperCase()), pageable);
-            default:
-                return repo.findAll(pageable);
+    // подсказки для поиска по части имени, ближайшие первыми
+    @Transactional(readOnly = true)
+    public List<PersonNameMatch> suggestNames(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            return List.of();
         }
+        String q = query.strip();
+        String pattern = "%" + q.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return repo.suggestByName(q, pattern, Math.min(Math.max(limit, 1), MAX_SUGGESTIONS));
     }
 
+    @Transactional(readOnly = true)
     public Optional<Person> get(Integer id) { return repo.findById(id); }
 
+    @Transactional(readOnly = true)
     public Person require(Integer id) {
         return repo.findById(id).orElseThrow(() -> new NoSuchElementException("Person not found"));
     }
@@ -57,84 +159,302 @@ public class PersonService {
         if (p.getHeight() < 1) throw new IllegalArgumentException("height must be > 0");
         if (p.getCoordinates() == null || p.getCoordinates().getY() == null)
             throw new IllegalArgumentException("coordinates.y must be not null");
+        // с непустой версией save() принял бы объект за существующий и сделал merge
+        p.setVersion(null);
         Person saved = repo.save(p);
+        events.publishEvent(PersonChangeEvent.created(PersonRow.of(saved)));
         log.info("Created person id={} name={} height={} nationality={}", saved.getId(), saved.getName(),
                 saved.getHeight(), saved.getNationality());
         return saved;
     }
 
-    @Transactional
+    // форма редактирования: version из скрытого поля - проверка, что объект не изменили с момента открытия
     public Person update(Integer id, Person updated) {
-        Person existing = require(id);
-        existing.setName(updated.getName());
-        existing.setEyeColor(updated.getEyeColor());
-        existing.setHairColor(updated.getHairColor());
-        existing.setHeight(updated.getHeight());
-        existing.setBirthday(updated.getBirthday());
-        existing.setNationality(updated.getNationality());
+        return patch(id, updated.getVersion(), PersonPatch.of(updated));
+    }
 
-        if (updated.getCoordinates() == null) {
-            throw new IllegalArgumentException("coordinates must be provided for update");
+    /**
+     * Меняет только переданные поля. С expectedVersion конфликт сразу уходит вызывающему (клиент
+     * правил устаревшее состояние); без неё патч повторяется на свежей версии строки - затронутые
+     * им поля он и так перезаписывает, остальные чужие изменения сохраняются.
+     */
+    public Person patch(Integer id, Long expectedVersion, PersonPatch patch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return tx.execute(status -> applyPatch(id, expectedVersion, patch));
+            } catch (OptimisticLockingFailureException | OptimisticLockException ex) {
+                if (expectedVersion != null || attempt >= maxUpdateAttempts) {
+                    throw ex;
+                }
+                log.debug("Update conflict on person id={}, attempt {} of {}", id, attempt, maxUpdateAttempts);
+                backOff(attempt);
+            }
         }
+    }
 
-        Coordinates existingCoordinates = existing.getCoordinates();
-        if (existingCoordinates == null) {
-            existingCoordinates = new Coordinates();
-            existing.setCoordinates(existingCoordinates);
+    private Person applyPatch(Integer id, Long expectedVersion, PersonPatch patch) {
+        Person existing = require(id);
+        if (expectedVersion != null && !expectedVersion.equals(existing.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(Person.class, id);
         }
-        Coordinates incomingCoordinates = updated.getCoordinates();
-        existingCoordinates.setX(incomingCoordinates.getX());
-        existingCoordinates.setY(incomingCoordinates.getY());
+        PersonRow previous = PersonRow.of(existing);
 
-        Location incomingLocation = updated.getLocation();
-        if (incomingLocation == null) {
-            existing.setLocation(null);
-        } else {
-            Location existingLocation = existing.getLocation();
-            if (existingLocation == null) {
-                existingLocation = new Location();
-                existing.setLocation(existingLocation);
+        // сеттеры только для изменившихся значений: с @DynamicUpdate в UPDATE попадут лишь они
+        boolean changed = false;
+        if (patch.name() != null && !patch.name().equals(existing.getName())) {
+            if (patch.name().isBlank()) throw new IllegalArgumentException("name must not be blank");
+            existing.setName(patch.name());
+            changed = true;
+        }
+        if (patch.height() != null && patch.height() != existing.getHeight()) {
+            if (patch.height() < 1) throw new IllegalArgumentException("height must be > 0");
+            existing.setHeight(patch.height());
+            changed = true;
+        }
+        if (patch.eyeColor() != null && patch.eyeColor() != existing.getEyeColor()) {
+            existing.setEyeColor(patch.eyeColor());
+            changed = true;
+        }
+        if (patch.hairColor() != null && patch.hairColor() != existing.getHairColor()) {
+            existing.setHairColor(patch.hairColor());
+            changed = true;
+        }
+        if (patch.nationality() != null && patch.nationality() != existing.getNationality()) {
+            existing.setNationality(patch.nationality());
+            changed = true;
+        }
+        if (patch.birthday() != null) {
+            LocalDate birthday = patch.birthday().orElse(null);
+            if (!Objects.equals(birthday, PersonPatch.localDate(existing.getBirthday()))) {
+                existing.setBirthday(birthday == null ? null : java.sql.Date.valueOf(birthday));
+                changed = true;
             }
-            existingLocation.setX(incomingLocation.getX());
-            existingLocation.setY(incomingLocation.getY());
-            existingLocation.setZ(incomingLocation.getZ());
         }
 
-        log.info("Updated person id={} name={} height={} nationality={}", existing.getId(), existing.getName(),
-                existing.getHeight(), existing.getNationality());
+        boolean associationsChanged = patchCoordinates(existing, patch) | patchLocation(existing, patch);
+        if (!changed && !associationsChanged) {
+            return existing;
+        }
+        if (!changed) {
+            // правка только coordinates/location не трогает строку persons, а версия должна вырасти:
+            // без блокировок - update persons set version с проверкой старой версии при коммите
+            em.lock(existing, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        }
+
+        // грязная строка получает новую версию при flush, принудительная - только при коммите,
+        // а клиентам уже сейчас нужна та, что будет в БД
+        repo.flush();
+        PersonRow row = PersonRow.of(existing);
+        if (!changed) {
+            row = row.withVersion(previous.version() + 1);
+        }
+        events.publishEvent(PersonChangeEvent.updated(previous, row));
+        log.info("Updated person id={} version={} name={} height={} nationality={}", row.id(), row.version(),
+                row.name(), row.height(), row.nationality());
         return existing;
     }
 
+    private static boolean patchCoordinates(Person existing, PersonPatch patch) {
+        if (patch.coordinatesX() == null && patch.coordinatesY() == null) {
+            return false;
+        }
+        Coordinates coordinates = existing.getCoordinates();
+        if (coordinates == null) {
+            if (patch.coordinatesY() == null) throw new IllegalArgumentException("coordinates.y must be not null");
+            coordinates = new Coordinates();
+            existing.setCoordinates(coordinates);
+        }
+        boolean changed = false;
+        if (patch.coordinatesX() != null && patch.coordinatesX() != coordinates.getX()) {
+            coordinates.setX(patch.coordinatesX());
+            changed = true;
+        }
+        if (patch.coordinatesY() != null && !patch.coordinatesY().equals(coordinates.getY())) {
+            coordinates.setY(patch.coordinatesY());
+            changed = true;
+        }
+        return changed;
+    }
+
+    private static boolean patchLocation(Person existing, PersonPatch patch) {
+        if (patch.location() == null) {
+            return false;
+        }
+        Location location = existing.getLocation();
+        PersonPatch.LocationValue value = patch.location().orElse(null);
+        if (value == null) {
+            existing.setLocation(null);
+            return location != null;
+        }
+        if (location == null) {
+            if (value.x() == null) throw new IllegalArgumentException("location.x must be not null");
+            if (value.y() == null) throw new IllegalArgumentException("location.y must be not null");
+            if (value.z() == null) throw new IllegalArgumentException("location.z must be not null");
+            existing.setLocation(new Location(value.x(), value.y(), value.z()));
+            return true;
+        }
+        boolean changed = false;
+        if (value.x() != null && !value.x().equals(location.getX())) {
+            location.setX(value.x());
+            changed = true;
+        }
+        if (value.y() != null && value.y() != location.getY()) {
+            location.setY(value.y());
+            changed = true;
+        }
+        if (value.z() != null && value.z() != location.getZ()) {
+            location.setZ(value.z());
+            changed = true;
+        }
+        return changed;
+    }
+
+    // случайная пауза, растущая с номером попытки, - чтобы конкуренты не столкнулись снова
+    private void backOff(int attempt) {
+        long bound = retryBackoff.toMillis() * attempt;
+        if (bound <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound / 2, bound + 1));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while retrying update", ex);
+        }
+    }
+
     @Transactional
     public void delete(Integer id) {
-        repo.deleteById(id);
+        repo.findById(id).ifPresent(p -> {
+            PersonRow row = PersonRow.of(p);
+            repo.delete(p);
+            events.publishEvent(PersonChangeEvent.deleted(row));
+        });
         log.info("Deleted person id={}", id);
     }
 
-    // Операции
-    @Transactional
-    public int deleteByNationality(Country nationality) {
-        int deleted = repo.deleteAllByNationality(nationality);
-        log.info("Bulk delete by nationality={} affected={} records", nationality, deleted);
-        return deleted;
+    // курсор порции - "height:id" последней строки
+    @Transactional(readOnly = true)
+    public CursorPage<PersonHeightRow> findHeightGreaterThan(int height, String after, int size) {
+        int afterHeight = height;
+        int afterId = 0;
+        if (after != null && !after.isBlank()) {
+            String[] parts = after.split(":", 2);
+            try {
+                afterHeight = Integer.parseInt(parts[0]);
+                afterId = Integer.parseInt(parts[1]);
+            } catch (RuntimeException ex) {
+                throw new IllegalArgumentException("malformed cursor " + after, ex);
+            }
+        }
+        int limit = Math.max(size, 1);
+        List<PersonHeightRow> rows = columns.isReady()
+                ? columns.heightRowsAfter(height, afterHeight, afterId, limit + 1)
+                : repo.findHeightRowsAfter(height, afterHeight, afterId, Limit.of(limit + 1));
+        if (rows.size() <= limit) {
+            return new CursorPage<>(rows, null, null, null);
+        }
+        List<PersonHeightRow> chunk = rows.subList(0, limit);
+        PersonHeightRow last = chunk.get(limit - 1);
+        return new CursorPage<>(chunk, last.height() + ":" + last.id(), null, null);
+    }
+
+    @Transactional(readOnly = true)
+    public void forEachHeightGreaterThan(int height, Consumer<PersonHeightRow> sink) {
+        if (columns.isReady()) {
+            columns.forEachHeightGreaterThan(height, sink);
+            return;
+        }
+        try (Stream<PersonHeightRow> rows = repo.streamHeightRows(height)) {
+            rows.forEach(sink);
+        }
     }
 
-    public List<Person> findHeightGreaterThan(int height) { return repo.findByHeightGreaterThan(height); }
+    // порция уникальных height после after; курсор следующей порции - последнее значение
+    @Transactional(readOnly = true)
+    public CursorPage<Integer> uniqueHeights(Integer after, int size) {
+        int limit = Math.max(size, 1);
+        int from = after == null ? 0 : after;
+        List<Integer> heights = columns.isReady()
+                ? columns.distinctHeightsAfter(from, limit + 1)
+                : repo.findDistinctHeightsAfter(from, Limit.of(limit + 1));
+        if (heights.size() <= limit) {
+            return new CursorPage<>(heights, null, null, null);
+        }
+        List<Integer> chunk = heights.subList(0, limit);
+        return new CursorPage<>(chunk, String.valueOf(chunk.get(limit - 1)), null, null);
+    }
 
-    public List<Integer> uniqueHeights() {
-        return repo.findAll().stream()
-                .map(Person::getHeight).distinct().sorted().collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public void forEachUniqueHeight(IntConsumer sink) {
+        if (columns.isReady()) {
+            columns.forEachDistinctHeight(sink);
+            return;
+        }
+        try (Stream<Integer> heights = repo.streamDistinctHeights()) {
+            heights.forEach(sink::accept);
+        }
     }
 
+    @Transactional(readOnly = true)
     public double hairColorShare(Color hairColor) {
+        // счётчики отвечают за O(1), колонки - проходом, БД - последней
+        if (aggregates.isReady()) return aggregates.hairColorShare(hairColor);
+        if (columns.isReady()) return columns.hairColorShare(hairColor);
         long total = repo.count();
         if (total == 0) return 0.0;
         long count = repo.countByHairColor(hairColor);
         return (count * 100.0) / total;
     }
 
+    @Transactional(readOnly = true)
     public long countHairColorInLocation(Color hairColor, Long locationId) {
         if (locationId == null) return 0;
+        if (aggregates.isReady()) return aggregates.countHairColorInLocation(hairColor, locationId);
+        if (columns.isReady()) return columns.countHairColorInLocation(hairColor, locationId);
         return repo.countByHairColorAndLocation_Id(hairColor, locationId);
     }
+
+    // Пространственные операции идут в LocationIndex, пока он не построен - в БД полным проходом
+    @Transactional(readOnly = true)
+    public LocationBoxResult locationsInBox(LocationBox box, int limit) {
+        if (locations.isReady()) return locations.inBox(box, limit);
+        return LocationIndex.summarize(pointsInBox(box), limit);
+    }
+
+    // не больше limit ближайших в радиусе, по возрастанию расстояния
+    @Transactional(readOnly = true)
+    public List<LocationMatch> locationsWithinRadius(double x, double y, double z, double radius, Color hairColor,
+                                                     int limit) {
+        requireFinite(x, y, z);
+        if (!(radius >= 0) || Double.isInfinite(radius)) {
+            throw new IllegalArgumentException("radius must be a finite non-negative number");
+        }
+        if (locations.isReady()) return locations.nearest(x, y, z, limit, radius, hairColor);
+        List<LocationPoint> candidates = pointsInBox(LocationBox.around(x, y, z, radius));
+        return LocationKdTree.scanNearest(candidates, x, y, z, limit, radius,
+                p -> hairColor == null || p.hairColor() == hairColor);
+    }
+
+    @Transactional(readOnly = true)
+    public List<LocationMatch> nearestLocations(double x, double y, double z, int k, Color hairColor) {
+        requireFinite(x, y, z);
+        if (locations.isReady()) return locations.nearest(x, y, z, k, Double.POSITIVE_INFINITY, hairColor);
+        return repo.findNearestLocationPoints(x, y, z, hairColor, Limit.of(Math.max(k, 1))).stream()
+                .map(p -> new LocationMatch(p, Math.sqrt(p.distanceSquared(x, y, z))))
+                .toList();
+    }
+
+    // y и z в БД целые: границы сужаются до ближайших целых внутри
+    private List<LocationPoint> pointsInBox(LocationBox box) {
+        return repo.findLocationPointsInBox(box.minX(), box.maxX(),
+                (int) Math.ceil(box.minY()), (int) Math.floor(box.maxY()),
+                (int) Math.ceil(box.minZ()), (int) Math.floor(box.maxZ()));
+    }
+
+    private static void requireFinite(double x, double y, double z) {
+        if (!Double.isFinite(x) || !Double.isFinite(y) || !Double.isFinite(z)) {
+            throw new IllegalArgumentException("point coordinates must be finite numbers");
+        }
+    }
 }
@@ -0,0 +1,116 @@
+package com.example.islab1.service;
+
+import com.example.islab1.repo.PersonFilter;
+import com.example.islab1.repo.QueryCounter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Таймеры и счётчики для каждого публичного метода PersonService.
+ * Тег filter - имена заданных условий PersonFilter, sort - аргумент sortField, сведённый к известным полям,
+ * чтобы произвольный ввод из запроса не плодил временные ряды.
+ */
+@Aspect
+@Component
+public class PersonServiceMetrics {
+    private final MeterRegistry registry;
+
+    public PersonServiceMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("execution(public * com.example.islab1.service.PersonService.*(..))")
+    public Object measure(ProceedingJoinPoint call) throws Throwable {
+        MethodSignature signature = (MethodSignature) call.getSignature();
+        Object[] args = call.getArgs();
+        Tags tags = Tags.of("operation", signature.getName())
+                .and(tags(signature.getParameterNames(), args));
+
+        // потоковые методы отдают строки через callback - считаем их по пути
+        AtomicLong streamed = new AtomicLong();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof Consumer<?> sink) {
+                args[i] = counting(sink, streamed);
+            } else if (args[i] instanceof IntConsumer sink) {
+                args[i] = (IntConsumer) value -> {
+                    streamed.incrementAndGet();
+                    sink.accept(value);
+                };
+            }
+        }
+
+        long statementsBefore = QueryCounter.statements();
+        long entitiesBefore = QueryCounter.entities();
+        Timer.Sample sample = Timer.start(registry);
+        String exception = "none";
+        try {
+            Object result = call.proceed(args);
+            counter("persons.service.rows", tags).increment(streamed.get() + rows(result));
+            return result;
+        } catch (Throwable ex) {
+            exception = ex.getClass().getSimpleName();
+            throw ex;
+        } finally {
+            sample.stop(Timer.builder("persons.service")
+                    .description("Время операций PersonService")
+                    .tags(tags)
+                    .tag("exception", exception)
+                    .register(registry));
+            counter("persons.service.statements", tags).increment(QueryCounter.statements() - statementsBefore);
+            counter("persons.service.entities.loaded", tags).increment(QueryCounter.entities() - entitiesBefore);
+        }
+    }
+
+    private Counter counter(String name, Tags tags) {
+        return Counter.builder(name).tags(tags).register(registry);
+    }
+
+    private static Tags tags(String[] names, Object[] args) {
+        String filter = "none";
+        String sort = "none";
+        for (int i = 0; i < names.length; i++) {
+            if (args[i] instanceof PersonFilter f) {
+                filter = f.describe();
+            } else if ("sortField".equals(names[i])) {
+                sort = sortTag((String) args[i]);
+            }
+        }
+        return Tags.of("filter", filter, "sort", sort);
+    }
+
+    private static String sortTag(String sortField) {
+        if (sortField == null || sortField.isBlank()) return "id";
+        return PersonCursor.SORTABLE.contains(sortField) ? sortField : "other";
+    }
+
+    private static long rows(Object result) {
+        if (result instanceof Slice<?> slice) return slice.getNumberOfElements();
+        if (result instanceof CursorPage<?> page) return page.content().size();
+        if (result instanceof Collection<?> collection) return collection.size();
+        if (result instanceof Optional<?> optional) return optional.isPresent() ? 1 : 0;
+        return result == null || result instanceof Number ? 0 : 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Consumer<T> counting(Consumer<?> sink, AtomicLong streamed) {
+        Consumer<T> target = (Consumer<T>) sink;
+        return value -> {
+            streamed.incrementAndGet();
+            target.accept(value);
+        };
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.islab1.service;
+
+import com.example.islab1.repo.ReplicaRouting;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Клиент, только что изменивший person, какое-то время читает с primary - иначе после
+ * редиректа на список он мог бы не увидеть собственную правку на отстающей реплике.
+ * Без настроенной реплики ничего не делает.
+ */
+@Component
+public class ReadYourWrites {
+    private final ObjectProvider<ReplicaRouting> routing;
+
+    public ReadYourWrites(ObjectProvider<ReplicaRouting> routing) {
+        this.routing = routing;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPersonChange(PersonChangeEvent event) {
+        routing.ifAvailable(ReplicaRouting::stickToPrimary);
+    }
+
+    /**
+     * Пойдёт ли read-only чтение этого запроса на реплику. Такие чтения обходят кэш страниц:
+     * страница с отстающей реплики, закэшированная после чужой записи, досталась бы и её автору.
+     */
+    public boolean readsFromReplica() {
+        ReplicaRouting r = routing.getIfAvailable();
+        return r != null && r.useReplica();
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.islab1.service;
+
+/**
+ * Изменение, прочитанное из outbox ({@link PersonChangeOutbox}), в порядке коммитов всего кластера.
+ * local - изменение сделано этим узлом, и его слушатели PersonChangeEvent уже отработали.
+ */
+public record RelayedPersonChange(long position, boolean local, PersonChangeEvent event) {
+}
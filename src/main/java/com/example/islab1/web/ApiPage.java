@@ -0,0 +1,14 @@
+package com.example.islab1.web;
+
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+
+// страница offset-пагинации в /api: без внутренностей PageImpl, формат не зависит от Spring Data
+public record ApiPage<T>(List<T> content, int page, int size, long totalElements, int totalPages) {
+
+    public static <T> ApiPage<T> of(Page<T> page) {
+        return new ApiPage<>(page.getContent(), page.getNumber(), page.getSize(),
+                page.getTotalElements(), page.getTotalPages());
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.islab1.web;
+
+import com.example.islab1.model.Country;
+import com.example.islab1.service.BulkDeleteProgress;
+import com.example.islab1.service.PersonBulkDeleteService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+// задачи удаления по nationality: запуск, опрос, отмена и продолжение; прогресс также идёт в /topic/ops/delete-jobs
+@RestController
+@RequestMapping("/ops/delete-jobs")
+public class BulkDeleteController {
+
+    private final PersonBulkDeleteService bulkDelete;
+    public BulkDeleteController(PersonBulkDeleteService bulkDelete) { this.bulkDelete = bulkDelete; }
+
+    @PostMapping
+    public ResponseEntity<BulkDeleteProgress> start(@RequestParam Country nationality) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(bulkDelete.start(nationality));
+    }
+
+    @GetMapping
+    public List<BulkDeleteProgress> list() {
+        return bulkDelete.list();
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<BulkDeleteProgress> get(@PathVariable String id) {
+        return ResponseEntity.of(bulkDelete.get(id));
+    }
+
+    @PostMapping("/{id}/cancel")
+    public BulkDeleteProgress cancel(@PathVariable String id) {
+        return bulkDelete.cancel(id);
+    }
+
+    @PostMapping("/{id}/resume")
+    public BulkDeleteProgress resume(@PathVariable String id) {
+        return bulkDelete.resume(id);
+    }
+}
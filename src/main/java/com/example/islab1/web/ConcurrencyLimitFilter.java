@@ -0,0 +1,75 @@
+package com.example.islab1.web;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничивает число одновременно обрабатываемых запросов. На виртуальных потоках Tomcat
+ * больше не упирается в размер пула, и без этого лимита все запросы ждали бы соединение Hikari
+ * до connection-timeout. Лишние запросы получают 503 после acquire-timeout. 0 - без ограничения.
+ */
+@Component
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    private final Semaphore permits;
+    private final int maxRequests;
+    private final Duration acquireTimeout;
+    private final Counter rejected;
+
+    public ConcurrencyLimitFilter(MeterRegistry registry,
+                                  @Value("${islab1.concurrency.max-requests:0}") int maxRequests,
+                                  @Value("${islab1.concurrency.acquire-timeout:2s}") Duration acquireTimeout) {
+        this.maxRequests = maxRequests;
+        this.permits = new Semaphore(Math.max(maxRequests, 0), true);
+        this.acquireTimeout = acquireTimeout;
+        this.rejected = registry.counter("persons.request.rejected");
+        Gauge.builder("persons.request.inflight", this, f -> f.maxRequests - f.permits.availablePermits())
+                .description("Запросы, занявшие место в лимите")
+                .register(registry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (maxRequests <= 0) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return path.startsWith("/ws") || path.startsWith("/style") || path.startsWith("/actuator");
+    }
+}
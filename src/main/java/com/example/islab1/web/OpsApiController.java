@@ -0,0 +1,106 @@
+package com.example.islab1.web;
+
+import com.example.islab1.model.Color;
+import com.example.islab1.repo.PersonHeightRow;
+import com.example.islab1.service.CursorPage;
+import com.example.islab1.service.LocationBox;
+import com.example.islab1.service.LocationBoxResult;
+import com.example.islab1.service.LocationMatch;
+import com.example.islab1.service.PersonChangeToken;
+import com.example.islab1.service.PersonService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+// JSON-вариант /ops; ETag общий с /api/persons - любое изменение persons меняет и эти ответы
+@RestController
+@RequestMapping("/api/ops")
+public class OpsApiController {
+    private static final int MAX_CHUNK_SIZE = 5_000;
+
+    private final PersonService service;
+    private final PersonChangeToken changes;
+
+    public OpsApiController(PersonService service, PersonChangeToken changes) {
+        this.service = service;
+        this.changes = changes;
+    }
+
+    public record HairShare(Color hairColor, double share) {}
+
+    public record HairCountInLocation(Color hairColor, Long locationId, long count) {}
+
+    @GetMapping("/height-greater")
+    public ResponseEntity<CursorPage<PersonHeightRow>> heightGreater(@RequestParam int height,
+                                                                     @RequestParam(required = false) String after,
+                                                                     @RequestParam(defaultValue = "100") int size,
+                                                                     WebRequest request) {
+        int chunk = Math.min(Math.max(size, 1), MAX_CHUNK_SIZE);
+        return conditional(request, () -> service.findHeightGreaterThan(height, after, chunk));
+    }
+
+    @GetMapping("/unique-heights")
+    public ResponseEntity<CursorPage<Integer>> uniqueHeights(@RequestParam(required = false) Integer after,
+                                                             @RequestParam(defaultValue = "500") int size,
+                                                             WebRequest request) {
+        int chunk = Math.min(Math.max(size, 1), MAX_CHUNK_SIZE);
+        return conditional(request, () -> service.uniqueHeights(after, chunk));
+    }
+
+    @GetMapping("/hair-share")
+    public ResponseEntity<HairShare> hairShare(@RequestParam Color hairColor, WebRequest request) {
+        return conditional(request, () -> new HairShare(hairColor, service.hairColorShare(hairColor)));
+    }
+
+    @GetMapping("/hair-count-in-location")
+    public ResponseEntity<HairCountInLocation> hairCountInLocation(@RequestParam Color hairColor,
+                                                                   @RequestParam(required = false) Long locationId,
+                                                                   WebRequest request) {
+        return conditional(request, () -> new HairCountInLocation(hairColor, locationId,
+                service.countHairColorInLocation(hairColor, locationId)));
+    }
+
+    @GetMapping("/locations/box")
+    public ResponseEntity<LocationBoxResult> locationsInBox(@RequestParam double minX, @RequestParam double maxX,
+                                                            @RequestParam double minY, @RequestParam double maxY,
+                                                            @RequestParam double minZ, @RequestParam double maxZ,
+                                                            @RequestParam(defaultValue = "100") int size,
+                                                            WebRequest request) {
+        LocationBox box = new LocationBox(minX, maxX, minY, maxY, minZ, maxZ);
+        int chunk = Math.min(Math.max(size, 1), MAX_CHUNK_SIZE);
+        return conditional(request, () -> service.locationsInBox(box, chunk));
+    }
+
+    @GetMapping("/locations/radius")
+    public ResponseEntity<List<LocationMatch>> locationsWithinRadius(@RequestParam double x, @RequestParam double y,
+                                                                     @RequestParam double z,
+                                                                     @RequestParam double radius,
+                                                                     @RequestParam(required = false) Color hairColor,
+                                                                     @RequestParam(defaultValue = "100") int size,
+                                                                     WebRequest request) {
+        int chunk = Math.min(Math.max(size, 1), MAX_CHUNK_SIZE);
+        return conditional(request, () -> service.locationsWithinRadius(x, y, z, radius, hairColor, chunk));
+    }
+
+    @GetMapping("/locations/nearest")
+    public ResponseEntity<List<LocationMatch>> nearestLocations(@RequestParam double x, @RequestParam double y,
+                                                                @RequestParam double z,
+                                                                @RequestParam(defaultValue = "10") int k,
+                                                                @RequestParam(required = false) Color hairColor,
+                                                                WebRequest request) {
+        int chunk = Math.min(Math.max(k, 1), MAX_CHUNK_SIZE);
+        return conditional(request, () -> service.nearestLocations(x, y, z, chunk, hairColor));
+    }
+
+    private <T> ResponseEntity<T> conditional(WebRequest request, Supplier<T> body) {
+        String etag = changes.collectionTag("ops");
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(body.get());
+    }
+}
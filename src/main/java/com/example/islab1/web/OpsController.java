@@ -2,48 +2,147 @@ package com.example.islab1.web;
 
 import com.example.islab1.model.Color;
 import com.example.islab1.model.Country;
-import com.example.islab1.model.Person;
+import com.example.islab1.service.BulkDeleteProgress;
+import com.example.islab1.service.LocationBox;
+import com.example.islab1.service.LocationBoxResult;
+import com.example.islab1.service.PersonBulkDeleteService;
 import com.example.islab1.service.PersonService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 
 @Controller
 @RequestMapping("/ops")
 public class OpsController {
 
+    private static final int MAX_CHUNK_SIZE = 5_000;
+
     private final PersonService service;
-    public OpsController(PersonService service) { this.service = service; }
+    private final PersonBulkDeleteService bulkDelete;
+    private final ObjectMapper objectMapper;
+
+    public OpsController(PersonService service, PersonBulkDeleteService bulkDelete, ObjectMapper objectMapper) {
+        this.service = service;
+        this.bulkDelete = bulkDelete;
+        this.objectMapper = objectMapper;
+    }
 
     @GetMapping
     public String index(Model model) {
         model.addAttribute("colors", Color.values());
         model.addAttribute("countries", Country.values());
+        model.addAttribute("deleteJobs", bulkDelete.list());
         return "ops/index";
     }
 
+    // без JS: задача запускается, прогресс виден на странице операций
     @PostMapping("/delete-by-nationality")
     public String deleteByNationality(@RequestParam Country nationality, Model model) {
-        int deleted = service.deleteByNationality(nationality);
-        model.addAttribute("message", "Удалено объектов: " + deleted);
+        BulkDeleteProgress job = bulkDelete.start(nationality);
+        model.addAttribute("message", "Удаление " + nationality + " запущено: " + job.total() + " объектов");
         return index(model);
     }
 
     @GetMapping("/height-greater")
-    public String heightGreater(@RequestParam int height, Model model) {
-        List<Person> list = service.findHeightGreaterThan(height);
-        model.addAttribute("results", list);
+    public String heightGreater(@RequestParam int height,
+                                @RequestParam(required = false) String after,
+                                @RequestParam(defaultValue = "100") int size,
+                                Model model) {
+        int chunk = Math.min(Math.max(size, 1), MAX_CHUNK_SIZE);
+        model.addAttribute("results", service.findHeightGreaterThan(height, after, chunk));
+        model.addAttribute("height", height);
+        model.addAttribute("size", chunk);
         return "ops/height-greater";
     }
 
+    @GetMapping(value = "/height-greater.csv", produces = "text/csv")
+    public ResponseEntity<StreamingResponseBody> heightGreaterCsv(@RequestParam int height) {
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write("id,name,height\n");
+            try {
+                service.forEachHeightGreaterThan(height, row -> {
+                    try {
+                        writer.write(row.id() + "," + csv(row.name()) + "," + row.height() + "\n");
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            writer.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"height-greater-" + height + ".csv\"")
+                .body(body);
+    }
+
+    // JSON-массив пишется генератором по одной строке, а не собирается целиком
+    @GetMapping(value = "/height-greater.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> heightGreaterJson(@RequestParam int height) {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = objectMapper.createGenerator(out)) {
+                json.writeStartArray();
+                try {
+                    service.forEachHeightGreaterThan(height, row -> {
+                        try {
+                            json.writeObject(row);
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    });
+                } catch (UncheckedIOException ex) {
+                    throw ex.getCause();
+                }
+                json.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
     @GetMapping("/unique-heights")
-    public String uniqueHeights(Model model) {
-        model.addAttribute("heights", service.uniqueHeights());
+    public String uniqueHeights(@RequestParam(required = false) Integer after,
+                                @RequestParam(defaultValue = "500") int size,
+                                Model model) {
+        int chunk = Math.min(Math.max(size, 1), MAX_CHUNK_SIZE);
+        model.addAttribute("heights", service.uniqueHeights(after, chunk));
+        model.addAttribute("size", chunk);
         return "ops/unique-heights";
     }
 
+    // весь список одним ответом, но без накопления в памяти: строки пишутся по мере чтения курсора
+    @GetMapping(value = "/unique-heights.txt", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<StreamingResponseBody> uniqueHeightsText() {
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            try {
+                service.forEachUniqueHeight(h -> {
+                    try {
+                        writer.write(Integer.toString(h));
+                        writer.write('\n');
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            writer.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(body);
+    }
+
     @GetMapping("/hair-share")
     public String hairShare(@RequestParam Color hairColor, Model model) {
         double share = service.hairColorShare(hairColor);
@@ -62,4 +161,49 @@ public class OpsController {
         model.addAttribute("count", count);
         return "ops/hair-count-in-location";
     }
+
+    // Пространственные операции над Location; y и z у локаций целые, границы включаются
+    @GetMapping("/locations/box")
+    public String locationsInBox(@RequestParam double minX, @RequestParam double maxX,
+                                 @RequestParam double minY, @RequestParam double maxY,
+                                 @RequestParam double minZ, @RequestParam double maxZ,
+                                 @RequestParam(defaultValue = "100") int size,
+                                 Model model) {
+        int chunk = Math.min(Math.max(size, 1), MAX_CHUNK_SIZE);
+        LocationBoxResult result = service.locationsInBox(new LocationBox(minX, maxX, minY, maxY, minZ, maxZ), chunk);
+        model.addAttribute("title", "Люди в параллелепипеде");
+        model.addAttribute("box", result);
+        model.addAttribute("points", result.points());
+        return "ops/locations";
+    }
+
+    @GetMapping("/locations/radius")
+    public String locationsWithinRadius(@RequestParam double x, @RequestParam double y, @RequestParam double z,
+                                        @RequestParam double radius,
+                                        @RequestParam(required = false) Color hairColor,
+                                        @RequestParam(defaultValue = "100") int size,
+                                        Model model) {
+        int chunk = Math.min(Math.max(size, 1), MAX_CHUNK_SIZE);
+        model.addAttribute("title", "Люди в радиусе " + radius);
+        model.addAttribute("matches", service.locationsWithinRadius(x, y, z, radius, hairColor, chunk));
+        return "ops/locations";
+    }
+
+    @GetMapping("/locations/nearest")
+    public String nearestLocations(@RequestParam double x, @RequestParam double y, @RequestParam double z,
+                                   @RequestParam(defaultValue = "10") int k,
+                                   @RequestParam(required = false) Color hairColor,
+                                   Model model) {
+        int chunk = Math.min(Math.max(k, 1), MAX_CHUNK_SIZE);
+        model.addAttribute("title", "Ближайшие люди");
+        model.addAttribute("matches", service.nearestLocations(x, y, z, chunk, hairColor));
+        return "ops/locations";
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
 }
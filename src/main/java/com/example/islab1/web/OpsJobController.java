@@ -0,0 +1,57 @@
+package com.example.islab1.web;
+
+import com.example.islab1.model.Color;
+import com.example.islab1.service.OpsJobService;
+import com.example.islab1.service.OpsJobSnapshot;
+import com.example.islab1.service.OpsQuery;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+// аналитика /ops фоновыми задачами: запуск, опрос; результат также приходит в /topic/ops/jobs
+@RestController
+@RequestMapping("/ops/jobs")
+public class OpsJobController {
+
+    private final OpsJobService jobs;
+    public OpsJobController(OpsJobService jobs) { this.jobs = jobs; }
+
+    // параметры - как у синхронных /ops/{op}; готовый результат сразу в ответе со статусом 200
+    @PostMapping("/{op}")
+    public ResponseEntity<OpsJobSnapshot> submit(@PathVariable String op,
+                                                 @RequestParam(required = false) Integer height,
+                                                 @RequestParam(required = false) String after,
+                                                 @RequestParam(defaultValue = "100") int size,
+                                                 @RequestParam(required = false) Color hairColor,
+                                                 @RequestParam(required = false) Long locationId) {
+        OpsQuery query = switch (OpsQuery.Op.ofPath(op)) {
+            case UNIQUE_HEIGHTS -> OpsQuery.uniqueHeights(after, size);
+            case HEIGHT_GREATER -> {
+                if (height == null) throw new IllegalArgumentException("height is required");
+                yield OpsQuery.heightGreater(height, after, size);
+            }
+            case HAIR_SHARE -> OpsQuery.hairShare(hairColor);
+            case HAIR_COUNT_IN_LOCATION -> OpsQuery.hairCountInLocation(hairColor, locationId);
+        };
+        try {
+            OpsJobSnapshot job = jobs.submit(query);
+            return ResponseEntity.status(job.finished() ? HttpStatus.OK : HttpStatus.ACCEPTED).body(job);
+        } catch (RejectedExecutionException ex) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+    }
+
+    @GetMapping
+    public List<OpsJobSnapshot> list() {
+        return jobs.list();
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<OpsJobSnapshot> get(@PathVariable String id) {
+        return ResponseEntity.of(jobs.get(id));
+    }
+}
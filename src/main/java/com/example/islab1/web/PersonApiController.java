@@ -0,0 +1,117 @@
+package com.example.islab1.web;
+
+import com.example.islab1.model.Person;
+import com.example.islab1.repo.PersonFilter;
+import com.example.islab1.service.CursorPage;
+import com.example.islab1.service.PersonChangeToken;
+import com.example.islab1.service.PersonPatch;
+import com.example.islab1.service.PersonRow;
+import com.example.islab1.service.PersonService;
+import org.springframework.data.domain.Page;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * JSON-доступ к persons для интеграций. Ответы помечаются ETag из {@link PersonChangeToken}:
+ * пока ничего не менялось, If-None-Match отвечается 304 без запроса к БД.
+ */
+@RestController
+@RequestMapping("/api/persons")
+public class PersonApiController {
+    private static final int MAX_PAGE_SIZE = 1_000;
+    // кэшировать можно, но каждый раз с перепроверкой ETag
+    private static final CacheControl REVALIDATE = CacheControl.noCache();
+
+    private final PersonService service;
+    private final PersonChangeToken changes;
+
+    public PersonApiController(PersonService service, PersonChangeToken changes) {
+        this.service = service;
+        this.changes = changes;
+    }
+
+    // параметры фильтра - как у /persons; cursor или mode=seek включает keyset-пагинацию
+    @GetMapping
+    public ResponseEntity<?> list(@RequestParam(required = false) String sort,
+                                  @RequestParam(required = false) String dir,
+                                  @RequestParam(defaultValue = "0") int page,
+                                  @RequestParam(defaultValue = "20") int size,
+                                  @RequestParam(required = false) String mode,
+                                  @RequestParam(required = false) String cursor,
+                                  @RequestParam(defaultValue = "false") boolean total,
+                                  @RequestParam Map<String, String> params,
+                                  WebRequest request) {
+        String etag = changes.collectionTag("persons");
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        PersonFilter filter = PersonFilter.parse(params);
+        int limit = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+
+        if ("seek".equals(mode) || (cursor != null && !cursor.isBlank())) {
+            CursorPage<PersonRow> persons = service.scroll(filter, sort, dir, cursor, limit, total);
+            return ResponseEntity.ok().eTag(etag).cacheControl(REVALIDATE).body(persons);
+        }
+        Page<PersonRow> persons = service.list(filter, sort, dir, page, limit);
+        return ResponseEntity.ok().eTag(etag).cacheControl(REVALIDATE).body(ApiPage.of(persons));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<PersonRow> get(@PathVariable Integer id, WebRequest request) {
+        String known = changes.knownTag(id);
+        if (known != null && request.checkNotModified(known)) {
+            return null;
+        }
+        long generation = changes.generation();
+        PersonRow row = service.get(id).map(PersonRow::of)
+                .orElseThrow(() -> new NoSuchElementException("Person not found"));
+        String etag = changes.remember(row, generation);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(REVALIDATE).body(row);
+    }
+
+    /**
+     * Частичное изменение (JSON merge patch). If-Match с ETag из GET включает проверку версии:
+     * при расхождении 412 и без повторов. Без If-Match конфликт повторяется на свежей версии.
+     */
+    @PatchMapping(value = "/{id}", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/merge-patch+json"})
+    public ResponseEntity<PersonRow> patch(@PathVariable Integer id,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                           @RequestBody PersonPatch patch) {
+        PersonRow row = PersonRow.of(service.patch(id, expectedVersion(id, ifMatch), patch));
+        return ResponseEntity.ok().eTag(PersonChangeToken.tag(row)).body(row);
+    }
+
+    // ETag записи - "id-version-crc"; для If-Match важны id и version
+    private static Long expectedVersion(Integer id, String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || "*".equals(ifMatch.strip())) {
+            return null;
+        }
+        String tag = ifMatch.strip();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        String[] parts = tag.replace("\"", "").split("-");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("malformed If-Match " + ifMatch);
+        }
+        try {
+            if (Integer.parseInt(parts[0]) != id) {
+                throw new ObjectOptimisticLockingFailureException(Person.class, id);
+            }
+            return Long.parseLong(parts[1]);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("malformed If-Match " + ifMatch, ex);
+        }
+    }
+}
@@ -1,31 +1,40 @@
 package com.example.islab1.web;
 
 import com.example.islab1.model.*;
+import com.example.islab1.repo.InvalidFilterException;
+import com.example.islab1.repo.PersonFilter;
+import com.example.islab1.repo.PersonNameMatch;
+import com.example.islab1.service.CursorPage;
+import com.example.islab1.service.PersonRow;
 import com.example.islab1.service.PersonService;
-import com.example.islab1.ws.PersonChangePublisher;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
 @Controller
 @RequestMapping("/persons")
 public class PersonController {
 
     private final PersonService service;
-    private final PersonChangePublisher publisher;
     private static final Logger log = LoggerFactory.getLogger(PersonController.class);
 
-    public PersonController(PersonService service, PersonChangePublisher publisher) {
+    public PersonController(PersonService service) {
         this.service = service;
-        this.publisher = publisher;
     }
 
     private void populateReferenceData(Model model) {
@@ -41,18 +50,54 @@ public class PersonController {
                        @RequestParam(required = false) String dir,
                        @RequestParam(defaultValue = "0") int page,
                        @RequestParam(defaultValue = "10") int size,
+                       @RequestParam(required = false) String mode,
+                       @RequestParam(required = false) String cursor,
+                       @RequestParam(defaultValue = "false") boolean total,
+                       @RequestParam Map<String, String> params,
                        Model model) {
 
-        Page<Person> persons;
+        PersonFilter filter;
         try {
-            persons = service.list(filterField, filterValue, sort, dir, page, size);
-        } catch (IllegalArgumentException ex) {
-            persons = Page.empty(PageRequest.of(Math.max(page, 0), Math.max(size, 1)));
-            model.addAttribute("filterError",
-                    "Некорректное значение фильтра для поля \"" + filterField + "\".");
+            filter = PersonFilter.parse(params);
+        } catch (InvalidFilterException ex) {
+            filter = null;
+            model.addAttribute("filterError", "Некорректные параметры фильтра: " + ex.getMessage());
+        }
+
+        boolean seek = "seek".equals(mode) || (cursor != null && !cursor.isBlank());
+        if (seek) {
+            CursorPage<PersonRow> persons = new CursorPage<>(List.of(), null, null, null);
+            if (filter != null) {
+                try {
+                    persons = service.scroll(filter, sort, dir, cursor, size, total);
+                } catch (IllegalArgumentException ex) {
+                    model.addAttribute("filterError", "Некорректные параметры сортировки или курсора.");
+                }
+            }
+            model.addAttribute("cursorPage", persons);
+            model.addAttribute("rows", persons.content());
+            model.addAttribute("lastPage", !persons.hasNext());
+        } else {
+            Page<PersonRow> persons = Page.empty(PageRequest.of(Math.max(page, 0), Math.max(size, 1)));
+            if (filter != null) {
+                try {
+                    persons = service.list(filter, sort, dir, page, size);
+                } catch (IllegalArgumentException ex) {
+                    model.addAttribute("filterError", "Некорректные параметры сортировки.");
+                }
+            }
+            model.addAttribute("page", persons);
+            model.addAttribute("rows", persons.getContent());
+            model.addAttribute("lastPage", persons.isLast());
         }
 
-        model.addAttribute("page", persons);
+        // условия, кроме выбранного в filterField, - для расширенной формы, ссылок и обновления по WebSocket
+        Map<String, String> filterParams = filter == null ? Map.of() : filter.toParams();
+        model.addAttribute("filterParams", filterParams);
+        model.addAttribute("filterQuery", filterQuery(filterParams, filterField));
+        model.addAttribute("mode", seek ? "seek" : "offset");
+        model.addAttribute("size", Math.max(size, 1));
+        model.addAttribute("total", total);
         model.addAttribute("filterField", filterField);
         model.addAttribute("filterValue", filterValue);
         model.addAttribute("sort", sort);
@@ -61,6 +106,22 @@ public class PersonController {
         return "persons/list";
     }
 
+    private static String filterQuery(Map<String, String> filterParams, String filterField) {
+        StringBuilder query = new StringBuilder();
+        filterParams.forEach((key, value) -> {
+            if (!key.equals(filterField)) {
+                query.append('&').append(key).append('=').append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+            }
+        });
+        return query.toString();
+    }
+
+    @GetMapping(value = "/suggest", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public List<PersonNameMatch> suggest(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        return service.suggestNames(q, limit);
+    }
+
     @GetMapping("/new")
     public String createForm(Model model) {
         if (!model.containsAttribute("person")) {
@@ -83,7 +144,6 @@ public class PersonController {
         }
         try {
             service.create(person);
-            publisher.broadcastChange();
 
             redirectAttributes.addFlashAttribute("successMessage", "объект успешно сохранен");
 
@@ -132,12 +192,17 @@ public class PersonController {
         }
         try {
             service.update(id, person);
-            publisher.broadcastChange();
 
             redirectAttributes.addFlashAttribute("successMessage", "объект успешно сохранен");
 
             return "redirect:/persons";
 
+        } catch (OptimisticLockingFailureException ex) {
+            log.info("Rejected stale update of person {}", id);
+            bindingResult.reject("updateError",
+                    "Объект уже изменён другим пользователем. Откройте его заново и повторите правку.");
+            populateReferenceData(model);
+            return "persons/form";
         } catch (DataIntegrityViolationException ex) {
             log.warn("Failed to update person {}: constraint violation", id, ex);
             bindingResult.reject("updateError", "Не удалось сохранить объект: данные противоречат ограничениям.");
@@ -154,7 +219,6 @@ public class PersonController {
     @PostMapping("/{id}/delete")
     public String delete(@PathVariable Integer id) {
         service.delete(id);
-        publisher.broadcastChange();
         return "redirect:/persons";
     }
 }
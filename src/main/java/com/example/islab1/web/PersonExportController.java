@@ -0,0 +1,39 @@
+package com.example.islab1.web;
+
+import com.example.islab1.repo.PersonFilter;
+import com.example.islab1.service.PersonExportService;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Map;
+
+@RestController
+public class PersonExportController {
+
+    private final PersonExportService exportService;
+    public PersonExportController(PersonExportService exportService) { this.exportService = exportService; }
+
+    // фильтр - те же параметры, что у /persons; строки пишутся в ответ по мере чтения курсора
+    @GetMapping("/persons/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "csv") String format,
+                                                        @RequestParam(defaultValue = "false") boolean gzip,
+                                                        @RequestParam Map<String, String> params) {
+        PersonExportService.Format exportFormat = PersonExportService.Format.parse(format);
+        PersonFilter filter = PersonFilter.parse(params);
+        String fileName = "persons." + exportFormat.extension() + (gzip ? ".gz" : "");
+
+        StreamingResponseBody body = out -> exportService.export(filter, exportFormat, gzip, out);
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip")
+                        : MediaType.parseMediaType(exportFormat.contentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(body);
+    }
+}
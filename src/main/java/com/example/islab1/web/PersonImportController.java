@@ -0,0 +1,30 @@
+package com.example.islab1.web;
+
+import com.example.islab1.service.ImportReport;
+import com.example.islab1.service.PersonImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+@RestController
+public class PersonImportController {
+
+    private final PersonImportService importService;
+    public PersonImportController(PersonImportService importService) { this.importService = importService; }
+
+    // тело запроса читается потоком, без multipart и без буферизации файла целиком
+    @PostMapping(value = "/persons/import",
+            consumes = {"text/csv", "application/x-ndjson", "application/jsonl"},
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ImportReport importPersons(@RequestHeader("Content-Type") MediaType contentType,
+                                      HttpServletRequest request) throws IOException {
+        PersonImportService.Format format = "csv".equals(contentType.getSubtype())
+                ? PersonImportService.Format.CSV
+                : PersonImportService.Format.JSON_LINES;
+        return importService.importPersons(request.getInputStream(), format);
+    }
+}
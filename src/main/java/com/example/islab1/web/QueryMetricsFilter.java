@@ -0,0 +1,55 @@
+package com.example.islab1.web;
+
+import com.example.islab1.repo.QueryCounter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Сколько SQL-запросов и загруженных сущностей пришлось на один HTTP-запрос.
+ * Тег uri - шаблон маппинга, как у http.server.requests.
+ */
+@Component
+public class QueryMetricsFilter extends OncePerRequestFilter {
+    private final MeterRegistry registry;
+
+    public QueryMetricsFilter(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        QueryCounter.reset();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+            summary("persons.request.statements", uri, request).record(QueryCounter.statements());
+            summary("persons.request.entities.loaded", uri, request).record(QueryCounter.entities());
+            QueryCounter.reset();
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return path.startsWith("/ws") || path.startsWith("/style") || path.startsWith("/actuator");
+    }
+
+    private DistributionSummary summary(String name, String uri, HttpServletRequest request) {
+        return DistributionSummary.builder(name)
+                .tag("uri", uri)
+                .tag("method", request.getMethod())
+                .register(registry);
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.islab1.web;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+/**
+ * Тайм-аут асинхронных ответов. Асинхронны здесь только потоковые выгрузки (StreamingResponseBody в
+ * {@link PersonExportController} и {@link OpsController}), а умолчание Tomcat в 30 с обрывало бы
+ * выгрузку большой таблицы на середине.
+ */
+@Configuration(proxyBeanMethods = false)
+public class StreamingExportConfig implements WebMvcConfigurer {
+    private final Duration requestTimeout;
+
+    public StreamingExportConfig(@Value("${islab1.export.request-timeout:30m}") Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        // отрицательное значение - без ограничения
+        configurer.setDefaultTimeout(requestTimeout.isNegative() ? -1 : requestTimeout.toMillis());
+    }
+}
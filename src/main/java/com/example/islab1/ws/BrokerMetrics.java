@@ -0,0 +1,58 @@
+package com.example.islab1.ws;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+// очереди входящего и исходящего каналов брокера и число активных STOMP-сессий
+@Component
+public class BrokerMetrics {
+    private final Set<String> sessions = ConcurrentHashMap.newKeySet();
+
+    public BrokerMetrics(MeterRegistry registry,
+                         @Qualifier("clientInboundChannelExecutor") Executor inbound,
+                         @Qualifier("clientOutboundChannelExecutor") Executor outbound) {
+        registerQueue(registry, "inbound", inbound);
+        registerQueue(registry, "outbound", outbound);
+        Gauge.builder("persons.ws.sessions.active", sessions, Set::size)
+                .description("Подключённые STOMP-сессии")
+                .register(registry);
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (sessionId != null) {
+            sessions.add(sessionId);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+    }
+
+    // у виртуальных потоков очереди нет - метрика регистрируется только для пула
+    private static void registerQueue(MeterRegistry registry, String channel, Executor executor) {
+        if (!(executor instanceof ThreadPoolTaskExecutor pool)) {
+            return;
+        }
+        Gauge.builder("persons.ws.channel.queue", pool, p -> p.getThreadPoolExecutor().getQueue().size())
+                .description("Сообщения, ожидающие обработки в канале брокера")
+                .tag("channel", channel)
+                .register(registry);
+        Gauge.builder("persons.ws.channel.active", pool, ThreadPoolTaskExecutor::getActiveCount)
+                .tag("channel", channel)
+                .register(registry);
+    }
+}
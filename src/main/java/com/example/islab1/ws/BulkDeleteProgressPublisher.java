@@ -0,0 +1,20 @@
+package com.example.islab1.ws;
+
+import com.example.islab1.service.BulkDeleteProgress;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+@Component
+public class BulkDeleteProgressPublisher {
+    public static final String DESTINATION = "/topic/ops/delete-jobs";
+
+    private final SimpMessagingTemplate template;
+    public BulkDeleteProgressPublisher(SimpMessagingTemplate template) { this.template = template; }
+
+    // прогресс публикуется между порциями, вне транзакций - обычного слушателя достаточно
+    @EventListener
+    public void onProgress(BulkDeleteProgress progress) {
+        template.convertAndSend(DESTINATION, progress);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.islab1.ws;
+
+import com.example.islab1.service.OpsJobSnapshot;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+@Component
+public class OpsJobPublisher {
+    public static final String DESTINATION = "/topic/ops/jobs";
+
+    private final SimpMessagingTemplate template;
+    public OpsJobPublisher(SimpMessagingTemplate template) { this.template = template; }
+
+    // запуск и результат задачи; клиент отбирает свои по id
+    @EventListener
+    public void onJob(OpsJobSnapshot job) {
+        template.convertAndSend(DESTINATION, job);
+    }
+}
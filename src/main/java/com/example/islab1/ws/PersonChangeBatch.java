@@ -0,0 +1,17 @@
+package com.example.islab1.ws;
+
+import com.example.islab1.service.PersonChangeEvent;
+
+import java.util.List;
+
+// один кадр в /topic/persons; resync=true - клиент пропустил кадры и должен перечитать данные
+public record PersonChangeBatch(List<PersonChangeEvent> events, boolean resync) {
+
+    public static PersonChangeBatch of(List<PersonChangeEvent> events) {
+        return new PersonChangeBatch(events, false);
+    }
+
+    public static PersonChangeBatch resyncRequired() {
+        return new PersonChangeBatch(List.of(), true);
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.islab1.ws;
+
+import com.example.islab1.service.PersonChangeEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Собирает события за окно {@code islab1.ws.coalesce-window} и отправляет их одним кадром.
+ * Несколько событий по одному id схлопываются в последнее состояние.
+ */
+@Component
+public class PersonChangeBroadcaster {
+    private static final Logger log = LoggerFactory.getLogger(PersonChangeBroadcaster.class);
+
+    private final SimpMessagingTemplate template;
+    private final Duration window;
+    private final int maxEventsPerFrame;
+    private final ScheduledExecutorService scheduler;
+
+    private final Object lock = new Object();
+    private Map<Object, PersonChangeEvent> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+
+    private final Counter submitted;
+    private final Counter sentEvents;
+    private final Counter frames;
+
+    public PersonChangeBroadcaster(SimpMessagingTemplate template,
+                                   MeterRegistry registry,
+                                   @Value("${islab1.ws.coalesce-window:50ms}") Duration window,
+                                   @Value("${islab1.ws.max-events-per-frame:500}") int maxEventsPerFrame) {
+        this.template = template;
+        this.window = window;
+        this.maxEventsPerFrame = maxEventsPerFrame;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "person-change-broadcaster");
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.submitted = registry.counter("persons.ws.events.submitted");
+        this.sentEvents = registry.counter("persons.ws.events.sent");
+        this.frames = registry.counter("persons.ws.frames.sent");
+        Gauge.builder("persons.ws.broadcast.pending", this, PersonChangeBroadcaster::pendingCount)
+                .description("События, ожидающие отправки в текущем окне")
+                .register(registry);
+        Gauge.builder("persons.ws.coalescing.ratio", this, PersonChangeBroadcaster::coalescingRatio)
+                .description("Сколько принятых событий приходится на один отправленный кадр")
+                .register(registry);
+    }
+
+    public void submit(PersonChangeEvent event) {
+        synchronized (lock) {
+            pending.merge(key(event), event, PersonChangeBroadcaster::coalesce);
+            submitted.increment();
+            if (!flushScheduled) {
+                flushScheduled = true;
+                scheduler.schedule(this::flush, window.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    void flush() {
+        List<PersonChangeEvent> batch;
+        synchronized (lock) {
+            batch = new ArrayList<>(pending.values());
+            pending = new LinkedHashMap<>();
+            flushScheduled = false;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            // слишком большой кадр дешевле заменить сигналом на перечитывание
+            PersonChangeBatch frame = batch.size() > maxEventsPerFrame
+                    ? PersonChangeBatch.resyncRequired()
+                    : PersonChangeBatch.of(batch);
+            template.convertAndSend(PersonChangePublisher.DESTINATION, frame);
+            sentEvents.increment(batch.size());
+            frames.increment();
+        } catch (RuntimeException ex) {
+            log.warn("Failed to broadcast {} person change events", batch.size(), ex);
+        }
+    }
+
+    int pendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    double coalescingRatio() {
+        double sent = frames.count();
+        return sent == 0 ? 0.0 : submitted.count() / sent;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+        flush();
+    }
+
+    private static Object key(PersonChangeEvent event) {
+        return event.id() != null ? event.id() : event.type() + ":" + event.nationality();
+    }
+
+    private static PersonChangeEvent coalesce(PersonChangeEvent previous, PersonChangeEvent next) {
+        return switch (previous.type()) {
+            // клиенты ещё не видели созданную строку
+            case CREATED -> switch (next.type()) {
+                case UPDATED -> PersonChangeEvent.created(next.person());
+                case DELETED -> null;
+                default -> next;
+            };
+            default -> next;
+        };
+    }
+}
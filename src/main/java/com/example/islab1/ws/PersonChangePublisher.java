@@ -1,13 +1,37 @@
 package com.example.islab1.ws;
 
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import com.example.islab1.service.PersonChangeEvent;
+import com.example.islab1.service.RelayedPersonChange;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 @Component
 public class PersonChangePublisher {
-    private final SimpMessagingTemplate template;
-    public PersonChangePublisher(SimpMessagingTemplate template) { this.template = template; }
-    public void broadcastChange() {
-        template.convertAndSend("/topic/persons", "changed");
+    public static final String DESTINATION = "/topic/persons";
+
+    private final PersonChangeBroadcaster broadcaster;
+    private final boolean outbox;
+
+    public PersonChangePublisher(PersonChangeBroadcaster broadcaster,
+                                 @Value("${islab1.outbox.enabled:false}") boolean outbox) {
+        this.broadcaster = broadcaster;
+        this.outbox = outbox;
+    }
+
+    // отправляем только после коммита, чтобы клиенты не увидели откатившиеся изменения
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPersonChange(PersonChangeEvent event) {
+        // с outbox изменения этого узла придут вместе с остальными через onRelayed
+        if (!outbox) {
+            broadcaster.submit(event);
+        }
+    }
+
+    // изменения всех узлов в порядке коммитов
+    @EventListener
+    public void onRelayed(RelayedPersonChange change) {
+        broadcaster.submit(change.event());
     }
 }
@@ -0,0 +1,118 @@
+package com.example.islab1.ws;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ограничивает очередь исходящих кадров /topic/persons для каждой сессии.
+ * Кадры сверх лимита отбрасываются, а первый кадр после разгрузки заменяется на resync.
+ */
+@Component
+public class SessionBackpressureInterceptor implements ExecutorChannelInterceptor {
+    private static final byte[] RESYNC_PAYLOAD = "{\"events\":[],\"resync\":true}".getBytes(StandardCharsets.UTF_8);
+
+    private final int queueLimit;
+    private final Map<String, SessionQueue> sessions = new ConcurrentHashMap<>();
+    private final Counter dropped;
+
+    public SessionBackpressureInterceptor(MeterRegistry registry,
+                                          @Value("${islab1.ws.session-queue-limit:16}") int queueLimit) {
+        this.queueLimit = queueLimit;
+        this.dropped = registry.counter("persons.ws.frames.dropped");
+        Gauge.builder("persons.ws.outbound.queue", this, SessionBackpressureInterceptor::totalDepth)
+                .description("Кадры /topic/persons в исходящих очередях всех сессий")
+                .register(registry);
+        Gauge.builder("persons.ws.outbound.queue.max", this, SessionBackpressureInterceptor::maxDepth)
+                .description("Самая длинная исходящая очередь среди сессий")
+                .register(registry);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String sessionId = trackedSession(message);
+        if (sessionId == null) {
+            return message;
+        }
+        SessionQueue queue = sessions.computeIfAbsent(sessionId, id -> new SessionQueue());
+        if (queue.depth.incrementAndGet() > queueLimit) {
+            queue.depth.decrementAndGet();
+            queue.missed.set(true);
+            dropped.increment();
+            return null;
+        }
+        if (queue.missed.compareAndSet(true, false)) {
+            return MessageBuilder.createMessage(RESYNC_PAYLOAD, message.getHeaders());
+        }
+        return message;
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        // до обработчика сообщение не дошло - освобождаем место сразу
+        if (!sent) {
+            release(message);
+        }
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        release(message);
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+    }
+
+    int totalDepth() {
+        return sessions.values().stream().mapToInt(q -> q.depth.get()).sum();
+    }
+
+    int maxDepth() {
+        return sessions.values().stream().mapToInt(q -> q.depth.get()).max().orElse(0);
+    }
+
+    private void release(Message<?> message) {
+        String sessionId = trackedSession(message);
+        if (sessionId == null) {
+            return;
+        }
+        SessionQueue queue = sessions.get(sessionId);
+        if (queue != null) {
+            queue.depth.decrementAndGet();
+        }
+    }
+
+    private static String trackedSession(Message<?> message) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return null;
+        }
+        if (!PersonChangePublisher.DESTINATION.equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))) {
+            return null;
+        }
+        return SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+    }
+
+    private static final class SessionQueue {
+        final AtomicInteger depth = new AtomicInteger();
+        final AtomicBoolean missed = new AtomicBoolean();
+    }
+}
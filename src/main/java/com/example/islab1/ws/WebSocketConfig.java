@@ -1,19 +1,67 @@
 package com.example.islab1.ws;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.socket.config.annotation.*;
 
+import java.time.Duration;
+
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+    private final SessionBackpressureInterceptor backpressure;
+    private final Duration sendTimeLimit;
+    private final DataSize sendBufferSizeLimit;
+    private final boolean virtualThreads;
+
+    public WebSocketConfig(SessionBackpressureInterceptor backpressure,
+                           @Value("${islab1.ws.send-time-limit:10s}") Duration sendTimeLimit,
+                           @Value("${islab1.ws.send-buffer-size-limit:512KB}") DataSize sendBufferSizeLimit,
+                           @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.backpressure = backpressure;
+        this.sendTimeLimit = sendTimeLimit;
+        this.sendBufferSizeLimit = sendBufferSizeLimit;
+        // как и Spring Boot, режим включается только на JDK 21+
+        this.virtualThreads = virtualThreads && Runtime.version().feature() >= 21;
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws").withSockJS();
     }
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
+        // брокер в памяти узла; изменения с других узлов приходят через PersonChangeOutbox
         registry.enableSimpleBroker("/topic"); // /topic/persons
         registry.setApplicationDestinationPrefixes("/app");
     }
-}
\ No newline at end of file
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        if (virtualThreads) {
+            registration.executor(virtualExecutor("ws-inbound-"));
+        }
+    }
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        if (virtualThreads) {
+            registration.executor(virtualExecutor("ws-outbound-"));
+        }
+        registration.interceptors(backpressure);
+    }
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // страховка на уровне сокета: зависшая сессия закрывается, а не копит буфер
+        registration.setSendTimeLimit((int) sendTimeLimit.toMillis());
+        registration.setSendBufferSizeLimit((int) sendBufferSizeLimit.toBytes());
+    }
+
+    private static SimpleAsyncTaskExecutor virtualExecutor(String prefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(prefix);
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+}
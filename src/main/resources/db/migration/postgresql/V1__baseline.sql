@@ -0,0 +1,29 @@
+-- Схема в том виде, в каком её создавал ddl-auto=update.
+-- На существующей БД не выполняется: spring.flyway.baseline-on-migrate помечает её версией 1.
+-- Всё, что появилось в сущностях позже (persons.version), - только в следующих миграциях.
+
+create table if not exists coordinates (
+    id bigint generated by default as identity primary key,
+    x  float(24) not null check (x >= -1000000 and x <= 1000000),
+    y  float(24) not null check (y >= -1000000 and y <= 1000000)
+);
+
+create table if not exists locations (
+    id bigint generated by default as identity primary key,
+    x  float(53) not null check (x >= -1000000 and x <= 1000000),
+    y  integer   not null check (y >= -1000000 and y <= 1000000),
+    z  integer   not null check (z >= -1000000 and z <= 1000000)
+);
+
+create table if not exists persons (
+    id             integer generated by default as identity primary key,
+    name           varchar(255)             not null check (name <> ''),
+    coordinates_id bigint                   not null unique references coordinates (id),
+    creation_date  timestamp with time zone not null,
+    eye_color      varchar(255)             not null check (eye_color in ('GREEN', 'BLACK', 'BLUE', 'WHITE')),
+    hair_color     varchar(255)             not null check (hair_color in ('GREEN', 'BLACK', 'BLUE', 'WHITE')),
+    location_id    bigint                   unique references locations (id),
+    height         integer                  not null check (height >= 1 and height <= 1000000),
+    birthday       date,
+    nationality    varchar(255)             not null check (nationality in ('USA', 'VATICAN', 'NORTH_KOREA'))
+);
@@ -0,0 +1,14 @@
+-- IDENTITY отключает JDBC-батчинг в Hibernate, поэтому id берутся из последовательностей с шагом 50
+-- (allocationSize в сущностях). Старт - с запасом в один пул после существующих id.
+
+alter table persons alter column id drop identity if exists;
+alter table coordinates alter column id drop identity if exists;
+alter table locations alter column id drop identity if exists;
+
+create sequence if not exists persons_seq start with 1 increment by 50;
+create sequence if not exists coordinates_seq start with 1 increment by 50;
+create sequence if not exists locations_seq start with 1 increment by 50;
+
+select setval('persons_seq', coalesce((select max(id) from persons), 0) + 51, false);
+select setval('coordinates_seq', coalesce((select max(id) from coordinates), 0) + 51, false);
+select setval('locations_seq', coalesce((select max(id) from locations), 0) + 51, false);
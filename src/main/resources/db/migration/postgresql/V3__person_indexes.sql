@@ -0,0 +1,20 @@
+-- Индексы под запросы PersonRepository. id вторым столбцом - под фильтр с сортировкой по id
+-- и keyset-продолжение (value, id) без отдельной сортировки.
+
+-- findByName / countByName, сортировка и keyset по name
+create index if not exists persons_name_idx on persons (name, id);
+
+-- findByEyeColor / countByEyeColor
+create index if not exists persons_eye_color_idx on persons (eye_color, id);
+
+-- findByHairColor / countByHairColor / countByHairColorAndLocation_Id
+create index if not exists persons_hair_color_location_idx on persons (hair_color, location_id);
+
+-- findByNationality / countByNationality / deleteAllByNationality
+create index if not exists persons_nationality_idx on persons (nationality, id);
+
+-- height > X, уникальные height, сортировка и keyset по height
+create index if not exists persons_height_id_idx on persons (height, id);
+
+-- сортировка и keyset по creationDate
+create index if not exists persons_creation_date_idx on persons (creation_date, id);
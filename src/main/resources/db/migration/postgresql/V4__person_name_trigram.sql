@@ -0,0 +1,6 @@
+-- Поиск по части имени: upper(name) LIKE '%...%' (findByName...IgnoreCase) и подсказки
+-- с сортировкой по триграммному расстоянию. GiST, а не GIN: только он отдаёт строки
+-- в порядке <-> (KNN), что нужно для top-N подсказок без сортировки всех совпадений.
+create extension if not exists pg_trgm;
+
+create index if not exists persons_name_trgm_idx on persons using gist (upper(name) gist_trgm_ops);
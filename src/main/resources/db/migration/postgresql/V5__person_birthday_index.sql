@@ -0,0 +1,2 @@
+-- Диапазон по birthday в PersonFilter (birthdayFrom/birthdayTo); id вторым столбцом - как в V3
+create index if not exists persons_birthday_idx on persons (birthday, id);
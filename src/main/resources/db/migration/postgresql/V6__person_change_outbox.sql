@@ -0,0 +1,11 @@
+-- Изменения persons для рассылки всем узлам (PersonChangeOutbox). Строка пишется в транзакции изменения
+-- под pg_advisory_xact_lock, поэтому порядок id совпадает с порядком коммитов.
+create table if not exists person_change_outbox (
+    id         bigserial                primary key,
+    origin     varchar(64)              not null,
+    payload    text                     not null,
+    created_at timestamp with time zone not null default now()
+);
+
+-- очистка по retention
+create index if not exists person_change_outbox_created_at_idx on person_change_outbox (created_at);
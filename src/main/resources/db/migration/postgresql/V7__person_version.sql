@@ -0,0 +1,3 @@
+-- Версия для оптимистичной блокировки (Person.version). В V1 её нет: БД, созданная ddl-auto до миграций,
+-- помечается версией 1 без выполнения V1 и получает столбец только здесь.
+alter table persons add column if not exists version bigint not null default 0;
@@ -0,0 +1,170 @@
+package com.example.islab1.repo;
+
+import com.example.islab1.model.Color;
+import com.example.islab1.model.Country;
+import com.example.islab1.model.Person;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.*;
+import org.springframework.data.jpa.domain.Specification;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// схема из миграций Flyway; планы строятся EXPLAIN (GENERIC_PLAN) по SQL, который сгенерировал Hibernate
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+		+ "com.example.islab1.repo.PersonRepositoryIndexUsageTest$CapturingInspector")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class PersonRepositoryIndexUsageTest {
+
+	@Container
+	@ServiceConnection
+	static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+	@Autowired
+	private PersonRepository repo;
+
+	@Autowired
+	private EntityManager em;
+
+	@BeforeEach
+	void clear() {
+		CapturingInspector.STATEMENTS.clear();
+	}
+
+	@Test
+	void filtersUseTheirIndexes() {
+		Pageable byId = PageRequest.of(0, 20, Sort.by("id"));
+
+		assertUses("persons_name_idx", () -> repo.findAll(spec(Map.of("name", "person-1")), byId));
+		assertUses("persons_eye_color_idx", () -> repo.findAll(spec(Map.of("eyeColor", "BLUE")), byId));
+		assertUses("persons_hair_color_location_idx", () -> repo.findAll(spec(Map.of("hairColor", "BLACK")), byId));
+		assertUses("persons_nationality_idx", () -> repo.findAll(spec(Map.of("nationality", "USA")), byId));
+	}
+
+	@Test
+	void rangeFiltersUseTheirIndexes() {
+		// при сортировке по id планировщик может предпочесть pkey с отбором - проверяем сам диапазон
+		Pageable unsorted = PageRequest.of(0, 20);
+
+		assertUses("persons_height_id_idx",
+				() -> repo.findAll(spec(Map.of("heightMin", "180", "heightMax", "190")), unsorted));
+		assertUses("persons_birthday_idx",
+				() -> repo.findAll(spec(Map.of("birthdayFrom", "1990-01-01", "birthdayTo", "1999-12-31")), unsorted));
+		assertUses("persons_creation_date_idx",
+				() -> repo.findAll(spec(Map.of("createdFrom", "2024-01-01")), unsorted));
+	}
+
+	@Test
+	void sortedSeeksUseTheirIndexes() {
+		assertUses("persons_name_idx", () -> seek(Sort.by("name", "id")));
+		assertUses("persons_height_id_idx", () -> seek(Sort.by("height", "id")));
+		assertUses("persons_creation_date_idx", () -> seek(Sort.by("creationDate", "id")));
+	}
+
+	@Test
+	void opsQueriesUseTheirIndexes() {
+		assertUses("persons_height_id_idx", () -> repo.findHeightRowsAfter(180, 190, 42, Limit.of(100)));
+		assertUses("persons_height_id_idx", () -> repo.findDistinctHeightsAfter(150, Limit.of(500)));
+		assertUses("persons_hair_color_location_idx", () -> repo.countByHairColor(Color.BLACK));
+		assertUses("persons_nationality_idx",
+				() -> repo.findByNationalityAndIdGreaterThanOrderByIdAsc(Country.VATICAN, 0, Limit.of(500)));
+	}
+
+	@Test
+	void nameSearchUsesTrigramIndex() {
+		Pageable unsorted = PageRequest.of(0, 20);
+
+		assertUses("persons_name_trgm_idx", () -> repo.findAll(spec(Map.of("nameContains", "erso")), unsorted));
+		assertUses("persons_name_trgm_idx", () -> repo.findAll(spec(Map.of("namePrefix", "pers")), unsorted));
+		assertUses("persons_name_trgm_idx", () -> repo.suggestByName("perso", "%perso%", 10));
+	}
+
+	@Test
+	void hairColorInLocationUsesAnIndex() {
+		// location_id уникален (OneToOne), поэтому планировщик вправе взять и его собственный индекс
+		assertUses("persons_hair_color_location_idx|persons_location_id_key",
+				() -> repo.countByHairColorAndLocation_Id(Color.BLACK, 1L));
+	}
+
+	private static Specification<Person> spec(Map<String, String> params) {
+		return PersonSpecifications.matching(PersonFilter.parse(params));
+	}
+
+	private Window<Person> seek(Sort sort) {
+		return repo.findBy(PersonSpecifications.matching(PersonFilter.NONE),
+				q -> q.sortBy(sort).limit(20).scroll(ScrollPosition.keyset()));
+	}
+
+	private void assertUses(String index, Runnable query) {
+		CapturingInspector.STATEMENTS.clear();
+		query.run();
+		List<String> statements = List.copyOf(CapturingInspector.STATEMENTS);
+		assertThat(statements).isNotEmpty();
+
+		for (String sql : statements) {
+			String plan = explain(sql);
+			assertThat(plan)
+					.as("plan for %s", sql)
+					.containsPattern("(Scan (Backward )?using|Bitmap Index Scan on) (" + index + ") ")
+					.doesNotContain("Seq Scan on persons");
+		}
+	}
+
+	private String explain(String sql) {
+		return em.unwrap(Session.class).doReturningWork(connection -> {
+			try (Statement st = connection.createStatement()) {
+				// на пустой таблице seq scan всегда дешевле - проверяем, что индекс вообще применим
+				st.execute("set local enable_seqscan = off");
+				List<String> lines = new ArrayList<>();
+				try (ResultSet rs = st.executeQuery("explain (generic_plan) " + numberParameters(sql))) {
+					while (rs.next()) {
+						lines.add(rs.getString(1));
+					}
+				}
+				return String.join("\n", lines);
+			}
+		});
+	}
+
+	// JDBC-плейсхолдеры ? -> $1, $2... для EXPLAIN (GENERIC_PLAN)
+	private static String numberParameters(String sql) {
+		Matcher m = Pattern.compile("\\?").matcher(sql);
+		StringBuilder out = new StringBuilder();
+		int n = 0;
+		while (m.find()) {
+			m.appendReplacement(out, "\\$" + (++n));
+		}
+		m.appendTail(out);
+		return out.toString();
+	}
+
+	public static class CapturingInspector implements StatementInspector {
+		static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+		@Override
+		public String inspect(String sql) {
+			STATEMENTS.add(sql);
+			return sql;
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package com.example.islab1.repo;
+
+import com.example.islab1.model.*;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.*;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+		"islab1.metrics.hibernate-statistics=true",
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.flyway.enabled=false"
+})
+class PersonRepositoryStatementCountTest {
+
+	private static final int PAGE_SIZE = 10;
+
+	@Autowired
+	private PersonRepository repo;
+
+	@Autowired
+	private EntityManager em;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void seed() {
+		List<Person> persons = new ArrayList<>();
+		for (int i = 0; i < 3 * PAGE_SIZE; i++) {
+			Person p = new Person();
+			p.setName("person-" + i);
+			p.setHeight(150 + i);
+			p.setEyeColor(Color.BLUE);
+			p.setHairColor(Color.BLACK);
+			p.setNationality(Country.USA);
+			p.setCoordinates(new Coordinates(i, (float) i));
+			if (i % 3 != 0) {
+				p.setLocation(new Location((double) i, i, i));
+			}
+			persons.add(p);
+		}
+		repo.saveAllAndFlush(persons);
+		em.clear();
+
+		statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+	}
+
+	@Test
+	void findAllPageLoadsAssociationsInOneSelect() {
+		render(repo.findAll(PageRequest.of(1, PAGE_SIZE, Sort.by("height"))).getContent());
+
+		// select страницы + count
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+	}
+
+	@Test
+	void loadedPageIsNotFlushedBack() {
+		render(repo.findAll(PageRequest.of(0, PAGE_SIZE, Sort.by("id"))).getContent());
+		em.flush();
+
+		// чтение в пишущей транзакции не делает сущности грязными: ни UPDATE, ни новой version
+		assertThat(statistics.getEntityUpdateCount()).isZero();
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+	}
+
+	@Test
+	void filterPagesLoadAssociationsInOneSelect() {
+		Pageable pageable = PageRequest.of(0, PAGE_SIZE, Sort.by("id"));
+
+		assertStatementsPerPage(() -> repo.findAll(spec(Map.of("name", "person-1")), pageable).getContent(), 1);
+		assertStatementsPerPage(() -> repo.findAll(spec(Map.of("eyeColor", "BLUE")), pageable).getContent(), 2);
+		assertStatementsPerPage(() -> repo.findAll(spec(Map.of("hairColor", "BLACK")), pageable).getContent(), 2);
+		assertStatementsPerPage(() -> repo.findAll(spec(Map.of("nationality", "USA")), pageable).getContent(), 2);
+		// несколько условий и диапазон по location: join под фильтр не даёт лишних select
+		assertStatementsPerPage(() -> repo.findAll(spec(Map.of("eyeColor", "BLUE", "heightMin", "155",
+				"locationXMax", "20")), pageable).getContent(), 2);
+	}
+
+	@Test
+	void filterMatchesAllCriteria() {
+		Page<Person> page = repo.findAll(spec(Map.of("namePrefix", "PERSON-1", "heightMax", "160",
+				"locationZMin", "1")), PageRequest.of(0, PAGE_SIZE, Sort.by("id")));
+
+		// из person-1, person-1x ростом не выше 160 только 1 и 10, у обоих есть location
+		assertThat(page.getContent()).extracting(Person::getName).containsExactly("person-1", "person-10");
+	}
+
+	@Test
+	void keysetWindowsLoadAssociationsInOneSelect() {
+		Sort sort = Sort.by("name");
+
+		assertStatementsPerPage(() -> window(PersonFilter.NONE, sort).getContent(), 1);
+		assertStatementsPerPage(() -> window(PersonFilter.parse(Map.of("name", "person-1")), sort).getContent(), 1);
+		assertStatementsPerPage(() -> window(PersonFilter.parse(Map.of("eyeColor", "BLUE")), sort).getContent(), 1);
+		assertStatementsPerPage(() -> window(PersonFilter.parse(Map.of("hairColor", "BLACK")), sort).getContent(), 1);
+		assertStatementsPerPage(() -> window(PersonFilter.parse(Map.of("nationality", "USA")), sort).getContent(), 1);
+		assertStatementsPerPage(() -> window(PersonFilter.parse(Map.of("locationXMin", "2")), sort).getContent(), 1);
+	}
+
+	@Test
+	void keysetWindowFiltersByFetchedLocation() {
+		List<Person> rows = window(PersonFilter.parse(Map.of("locationXMax", "4")), Sort.by("id")).getContent();
+
+		// без location (i % 3 == 0) в область не попадает
+		assertThat(rows).extracting(Person::getName).containsExactly("person-1", "person-2", "person-4");
+	}
+
+	// как PersonService.scroll
+	private Window<Person> window(PersonFilter filter, Sort sort) {
+		return repo.findBy(PersonSpecifications.fetchingAssociations().and(PersonSpecifications.matching(filter)),
+				q -> q.sortBy(sort).limit(PAGE_SIZE).scroll(ScrollPosition.keyset()));
+	}
+
+	private static Specification<Person> spec(Map<String, String> params) {
+		return PersonSpecifications.matching(PersonFilter.parse(params));
+	}
+
+	private void assertStatementsPerPage(Supplier<List<Person>> query, long expected) {
+		em.clear();
+		statistics.clear();
+
+		List<Person> rows = query.get();
+		render(rows);
+
+		assertThat(rows).isNotEmpty();
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(expected);
+	}
+
+	// то же, что читает persons/list.html
+	private static void render(List<Person> rows) {
+		for (Person p : rows) {
+			p.getCoordinates().getX();
+			p.getCoordinates().getY();
+			if (p.getLocation() != null) {
+				p.getLocation().getX();
+				p.getLocation().getY();
+				p.getLocation().getZ();
+			}
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package com.example.islab1.repo;
+
+import com.example.islab1.model.*;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.flyway.enabled=false"
+})
+@Import(QueryCounter.class)
+class QueryCounterTest {
+
+	@Autowired
+	private PersonRepository repo;
+
+	@Autowired
+	private EntityManager em;
+
+	@Test
+	void countsStatementsAndLoadedEntitiesOfEveryType() {
+		for (int i = 0; i < 2; i++) {
+			Person p = new Person();
+			p.setName("person-" + i);
+			p.setHeight(170);
+			p.setEyeColor(Color.BLUE);
+			p.setHairColor(Color.BLACK);
+			p.setNationality(Country.USA);
+			p.setCoordinates(new Coordinates(i, (float) i));
+			p.setLocation(new Location((double) i, i, i));
+			repo.save(p);
+		}
+		repo.flush();
+		em.clear();
+		em.getEntityManagerFactory().getCache().evictAll();
+		QueryCounter.reset();
+
+		List<Person> persons = repo.findAll();
+		persons.forEach(p -> {
+			p.getCoordinates().getX();
+			p.getLocation().getX();
+		});
+
+		// 2 persons + 2 coordinates + 2 locations
+		assertThat(QueryCounter.entities()).isEqualTo(6);
+		assertThat(QueryCounter.statements()).isPositive();
+		QueryCounter.reset();
+	}
+}
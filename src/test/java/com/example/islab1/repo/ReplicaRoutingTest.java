@@ -0,0 +1,164 @@
+package com.example.islab1.repo;
+
+import com.example.islab1.service.PersonService;
+import com.example.islab1.service.ReadYourWrites;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// две базы H2 вместо primary и реплики: в каждой таблица node с её именем
+class ReplicaRoutingTest {
+
+	private final DataSource primary = database("primary");
+	private final DataSource replica = database("replica");
+
+	@AfterEach
+	void clearRequest() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	void readOnlyTransactionsGoToUsableReplica() {
+		ReplicaRouting routing = routing(replica);
+		DataSource dataSource = routed(routing);
+
+		// до первой проверки отставания реплика не используется
+		assertThat(node(dataSource, true)).isEqualTo("primary");
+
+		routing.checkLag();
+		assertThat(routing.isReplicaUsable()).isTrue();
+		assertThat(node(dataSource, true)).isEqualTo("replica");
+		assertThat(node(dataSource, false)).isEqualTo("primary");
+		assertThat(ReplicaRouting.onPrimary(() -> node(dataSource, true))).isEqualTo("primary");
+	}
+
+	@Test
+	void unreachableReplicaFallsBackToPrimary() {
+		ReplicaRouting routing = routing(new DriverManagerDataSource("jdbc:h2:mem:missing;IFEXISTS=TRUE", "sa", ""));
+		DataSource dataSource = routed(routing);
+
+		routing.checkLag();
+
+		assertThat(routing.isReplicaUsable()).isFalse();
+		assertThat(node(dataSource, true)).isEqualTo("primary");
+	}
+
+	@Test
+	void clientReadsOwnWritesFromPrimary() {
+		ReplicaRouting routing = routing(replica);
+		DataSource dataSource = routed(routing);
+		routing.checkLag();
+		MockHttpServletRequest request = new MockHttpServletRequest();
+
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+		routing.stickToPrimary();
+		assertThat(node(dataSource, true)).isEqualTo("primary");
+
+		// следующий запрос того же клиента - та же сессия
+		MockHttpServletRequest next = new MockHttpServletRequest();
+		next.setSession(request.getSession(false));
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(next));
+		assertThat(node(dataSource, true)).isEqualTo("primary");
+
+		// чужой клиент читает с реплики
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+		assertThat(node(dataSource, true)).isEqualTo("replica");
+	}
+
+	@Test
+	void replicaReadsDoNotFillPageCache() {
+		ReplicaRouting routing = routing(replica);
+		DataSource dataSource = routed(routing);
+		routing.checkLag();
+		MockHttpServletRequest writer = new MockHttpServletRequest();
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(writer));
+		routing.stickToPrimary();
+
+		try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+			context.register(PageCacheConfig.class, ReadYourWrites.class);
+			context.registerBean(ReplicaRouting.class, () -> routing);
+			context.registerBean(Pages.class, () -> new Pages(dataSource));
+			context.refresh();
+			Pages pages = context.getBean(Pages.class);
+
+			// кэш только что сброшен записью; чужой клиент читает отстающую реплику
+			RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+			assertThat(pages.page()).isEqualTo("replica");
+
+			// автор записи получает страницу с primary, а не ту, что прочитана с реплики
+			MockHttpServletRequest next = new MockHttpServletRequest();
+			next.setSession(writer.getSession(false));
+			RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(next));
+			assertThat(pages.page()).isEqualTo("primary");
+			assertThat(context.getBean(CacheManager.class).getCache(PersonService.PAGES_CACHE).get("page", String.class))
+					.isEqualTo("primary");
+		}
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	@EnableCaching
+	static class PageCacheConfig {
+		@Bean
+		CacheManager cacheManager() {
+			return new ConcurrentMapCacheManager(PersonService.PAGES_CACHE);
+		}
+	}
+
+	// кэшируется так же, как PersonService.list
+	static class Pages {
+		private final DataSource dataSource;
+
+		Pages(DataSource dataSource) {
+			this.dataSource = dataSource;
+		}
+
+		@Cacheable(cacheNames = PersonService.PAGES_CACHE, key = "'page'", condition = PersonService.PRIMARY_READS)
+		public String page() {
+			return node(dataSource, true);
+		}
+	}
+
+	private ReplicaRouting routing(DataSource replicaSource) {
+		return new ReplicaRouting(replicaSource, new SimpleMeterRegistry(), Duration.ofSeconds(1), Duration.ofMinutes(1));
+	}
+
+	private DataSource routed(ReplicaRouting routing) {
+		return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replica, routing));
+	}
+
+	private static String node(DataSource dataSource, boolean readOnly) {
+		TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		tx.setReadOnly(readOnly);
+		return tx.execute(status -> new JdbcTemplate(dataSource).queryForObject("SELECT name FROM node", String.class));
+	}
+
+	private static DataSource database(String name) {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				"jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+		JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+		jdbc.execute("CREATE TABLE IF NOT EXISTS node (name varchar(16))");
+		jdbc.update("DELETE FROM node");
+		jdbc.update("INSERT INTO node VALUES (?)", name);
+		return dataSource;
+	}
+}
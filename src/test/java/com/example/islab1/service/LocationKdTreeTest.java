@@ -0,0 +1,68 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.Color;
+import com.example.islab1.repo.LocationPoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// дерево должно отвечать ровно как линейный проход, в том числе на повторяющихся координатах
+class LocationKdTreeTest {
+
+	private static final Color[] COLORS = Color.values();
+
+	private final List<LocationPoint> points = new ArrayList<>();
+
+	LocationKdTreeTest() {
+		SplittableRandom random = new SplittableRandom(7);
+		for (int i = 1; i <= 5_000; i++) {
+			// узкий диапазон y/z даёт много равных значений по оси
+			points.add(new LocationPoint(i, random.nextDouble(-100, 100), random.nextInt(-20, 20),
+					random.nextInt(-20, 20), COLORS[random.nextInt(COLORS.length)]));
+		}
+	}
+
+	@Test
+	void boxMatchesScan() {
+		LocationKdTree tree = LocationKdTree.build(points);
+		LocationBox box = new LocationBox(-30, 45.5, -5, 7, -20, 0);
+
+		List<LocationPoint> found = new ArrayList<>();
+		tree.forEachInBox(box, found::add);
+
+		assertThat(found).containsExactlyInAnyOrderElementsOf(points.stream().filter(box::contains).toList());
+	}
+
+	@Test
+	void nearestMatchesScan() {
+		LocationKdTree tree = LocationKdTree.build(points);
+		SplittableRandom random = new SplittableRandom(11);
+		for (int i = 0; i < 50; i++) {
+			double x = random.nextDouble(-120, 120);
+			double y = random.nextDouble(-25, 25);
+			double z = random.nextDouble(-25, 25);
+			Color color = COLORS[i % COLORS.length];
+
+			assertThat(tree.nearest(x, y, z, 15, Double.POSITIVE_INFINITY, p -> p.hairColor() == color))
+					.isEqualTo(LocationKdTree.scanNearest(points, x, y, z, 15, Double.POSITIVE_INFINITY,
+							p -> p.hairColor() == color));
+			assertThat(tree.nearest(x, y, z, 1_000, 12.5, p -> true))
+					.isEqualTo(LocationKdTree.scanNearest(points, x, y, z, 1_000, 12.5, p -> true))
+					.allSatisfy(m -> assertThat(m.distance()).isLessThanOrEqualTo(12.5));
+		}
+	}
+
+	@Test
+	void emptyTreeFindsNothing() {
+		LocationKdTree tree = LocationKdTree.build(List.of());
+
+		assertThat(tree.nearest(0, 0, 0, 5, Double.POSITIVE_INFINITY, p -> true)).isEmpty();
+		List<LocationPoint> found = new ArrayList<>();
+		tree.forEachInBox(new LocationBox(-1, 1, -1, 1, -1, 1), found::add);
+		assertThat(found).isEmpty();
+	}
+}
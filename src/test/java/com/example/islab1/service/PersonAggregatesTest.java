@@ -0,0 +1,102 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.Color;
+import com.example.islab1.model.Country;
+import com.example.islab1.repo.HairColorLocationCount;
+import com.example.islab1.repo.PersonRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PersonAggregatesTest {
+
+	private final PersonRepository repo = mock(PersonRepository.class);
+	private final PersonAggregates aggregates = new PersonAggregates(repo, new SimpleMeterRegistry(), true);
+
+	@Test
+	void changeCommittedDuringLoadIsNotLost() {
+		when(repo.countGroupedByHairColorAndLocation()).thenReturn(List.of(count(Color.GREEN, 1L, 2)));
+		aggregates.rebuild();
+
+		// запрос к БД уже прочитал снимок, а в это время коммитится ещё один человек
+		when(repo.countGroupedByHairColorAndLocation()).thenAnswer(invocation -> {
+			aggregates.onPersonChange(PersonChangeEvent.created(row(3, Color.GREEN, 1L)));
+			return List.of(count(Color.GREEN, 1L, 2));
+		});
+		aggregates.rebuild();
+
+		assertThat(aggregates.countHairColorInLocation(Color.GREEN, 1L)).isEqualTo(3);
+		assertThat(aggregates.hairColorShare(Color.GREEN)).isEqualTo(100.0);
+	}
+
+	@Test
+	void driftIsRepairedOnlyWhenItPersists() {
+		when(repo.countGroupedByHairColorAndLocation()).thenReturn(List.of(count(Color.GREEN, 1L, 2)));
+		aggregates.rebuild();
+
+		// изменение мимо событий: первая сверка только замечает расхождение
+		when(repo.countGroupedByHairColorAndLocation()).thenReturn(List.of(count(Color.GREEN, 1L, 2),
+				count(Color.BLUE, 1L, 2)));
+		aggregates.reconcile();
+		assertThat(aggregates.countHairColorInLocation(Color.BLUE, 1L)).isZero();
+
+		aggregates.reconcile();
+		assertThat(aggregates.countHairColorInLocation(Color.BLUE, 1L)).isEqualTo(2);
+		assertThat(aggregates.hairColorShare(Color.BLUE)).isEqualTo(50.0);
+	}
+
+	@Test
+	void writeDuringReconcileIsNotDrift() {
+		when(repo.countGroupedByHairColorAndLocation()).thenReturn(List.of(count(Color.GREEN, 1L, 2)));
+		aggregates.rebuild();
+
+		when(repo.countGroupedByHairColorAndLocation()).thenAnswer(invocation -> {
+			aggregates.onPersonChange(PersonChangeEvent.deleted(row(1, Color.GREEN, 1L)));
+			return List.of(count(Color.GREEN, 1L, 2));
+		});
+		aggregates.reconcile();
+		// doReturn: when(...) вызвал бы прошлый ответ с ещё одним удалением
+		doReturn(List.of(count(Color.GREEN, 1L, 1))).when(repo).countGroupedByHairColorAndLocation();
+		aggregates.reconcile();
+
+		assertThat(aggregates.countHairColorInLocation(Color.GREEN, 1L)).isEqualTo(1);
+	}
+
+	@Test
+	void countsManyLocationsAndDropsEmptyOnes() {
+		List<HairColorLocationCount> rows = new ArrayList<>();
+		for (long location = 1; location <= 1000; location++) {
+			rows.add(count(Color.values()[(int) (location % Color.values().length)], location, location));
+		}
+		when(repo.countGroupedByHairColorAndLocation()).thenReturn(rows);
+		aggregates.rebuild();
+
+		for (long location = 1; location <= 1000; location += 2) {
+			Color color = Color.values()[(int) (location % Color.values().length)];
+			for (int i = 0; i < location; i++) {
+				aggregates.onPersonChange(PersonChangeEvent.deleted(row(i, color, location)));
+			}
+		}
+
+		for (long location = 1; location <= 1000; location++) {
+			Color color = Color.values()[(int) (location % Color.values().length)];
+			assertThat(aggregates.countHairColorInLocation(color, location)).isEqualTo(location % 2 == 0 ? location : 0);
+		}
+	}
+
+	private static HairColorLocationCount count(Color color, Long locationId, long count) {
+		return new HairColorLocationCount(color, locationId, count);
+	}
+
+	private static PersonRow row(int id, Color hairColor, Long locationId) {
+		return new PersonRow(id, 1L, "p" + id, 170, Color.BLUE, hairColor, Country.USA, 1f, 1f,
+				locationId, 1.0, 1, 1, null, 0L);
+	}
+}
@@ -0,0 +1,152 @@
+package com.example.islab1.service;
+
+import com.example.islab1.IsLab1Application;
+import com.example.islab1.model.Color;
+import com.example.islab1.model.Coordinates;
+import com.example.islab1.model.Country;
+import com.example.islab1.model.Person;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.PayloadApplicationEvent;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Два узла приложения на одной БД: изменение на любом доходит до обоих в одном порядке коммитов.
+ * Здесь - общая H2 в памяти без Docker: pg_advisory_xact_lock заменён пустой функцией, порядок
+ * даёт то, что изменения идут из одного потока. Сама блокировка проверяется в
+ * {@link PostgresPersonChangeOutboxTest}.
+ */
+class PersonChangeOutboxTest {
+
+	private static final String H2_URL = "jdbc:h2:mem:outbox;MODE=PostgreSQL;DB_CLOSE_DELAY=-1";
+
+	private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+	// таблицу outbox создаёт миграция только для PostgreSQL
+	@BeforeAll
+	static void createOutboxTable() throws SQLException {
+		try (Connection connection = DriverManager.getConnection(H2_URL, "sa", "");
+			 Statement statement = connection.createStatement()) {
+			statement.execute("create table if not exists person_change_outbox ("
+					+ "id bigint generated by default as identity primary key, "
+					+ "origin varchar(64) not null, payload text not null, "
+					+ "created_at timestamp with time zone not null default current_timestamp)");
+			statement.execute("create alias if not exists pg_advisory_xact_lock for '"
+					+ AdvisoryLock.class.getName() + ".lock'");
+		}
+	}
+
+	// H2 вызывает функцию через reflection - нужен public класс
+	public static final class AdvisoryLock {
+		public static void lock(long key) {
+		}
+	}
+
+	// свойства подключения обоих узлов
+	protected List<String> database() {
+		return List.of(
+				"spring.datasource.url=" + H2_URL,
+				"spring.datasource.driver-class-name=org.h2.Driver",
+				"spring.datasource.username=sa",
+				"spring.datasource.password=",
+				"spring.flyway.enabled=false",
+				// create-drop второго узла снёс бы таблицы первого
+				"spring.jpa.hibernate.ddl-auto=update");
+	}
+
+	@AfterEach
+	void stopNodes() {
+		nodes.forEach(ConfigurableApplicationContext::close);
+	}
+
+	@Test
+	void changesReachEveryNodeInCommitOrder() throws InterruptedException {
+		BlockingQueue<RelayedPersonChange> seenByA = new LinkedBlockingQueue<>();
+		BlockingQueue<RelayedPersonChange> seenByB = new LinkedBlockingQueue<>();
+		PersonService a = start("a", seenByA).getBean(PersonService.class);
+		PersonService b = start("b", seenByB).getBean(PersonService.class);
+
+		Person alice = a.create(person("alice"));
+		a.patch(alice.getId(), null, new PersonPatch(null, null, null, null, null, 190, null, null, null));
+		Person bob = b.create(person("bob"));
+
+		List<RelayedPersonChange> onA = take(seenByA, 3);
+		List<RelayedPersonChange> onB = take(seenByB, 3);
+		assertThat(onA).extracting(RelayedPersonChange::position)
+				.isSorted()
+				.doesNotHaveDuplicates()
+				.isEqualTo(onB.stream().map(RelayedPersonChange::position).toList());
+		assertThat(onB).extracting(c -> c.event().type()).containsExactly(
+				PersonChangeEvent.Type.CREATED, PersonChangeEvent.Type.UPDATED, PersonChangeEvent.Type.CREATED);
+		assertThat(onB).extracting(c -> c.event().id()).containsExactly(alice.getId(), alice.getId(), bob.getId());
+		assertThat(onA).extracting(RelayedPersonChange::local).containsExactly(true, true, false);
+		assertThat(onB).extracting(RelayedPersonChange::local).containsExactly(false, false, true);
+
+		// previous переживает сериализацию - без него не пересчитать счётчики на другом узле
+		PersonChangeEvent updated = onB.get(1).event();
+		assertThat(updated.previous().height()).isEqualTo(170);
+		assertThat(updated.person().height()).isEqualTo(190);
+		assertThat(b.get(alice.getId())).map(Person::getHeight).contains(190);
+	}
+
+	private ConfigurableApplicationContext start(String node, BlockingQueue<RelayedPersonChange> seen) {
+		List<String> args = new ArrayList<>(database());
+		args.addAll(List.of(
+				"server.port=0",
+				"spring.jpa.show-sql=false",
+				// CaffeineCachingProvider один на JVM - узлы делили бы кэш второго уровня
+				"spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+				"islab1.outbox.node-id=" + node,
+				"islab1.outbox.poll-interval=20ms"));
+		// аргументами командной строки - properties() ниже application.properties и его не перекрыли бы
+		ConfigurableApplicationContext context = new SpringApplicationBuilder(IsLab1Application.class)
+				.profiles("multinode")
+				.listeners((ApplicationListener<ApplicationEvent>) event -> {
+					if (event instanceof PayloadApplicationEvent<?> payload
+							&& payload.getPayload() instanceof RelayedPersonChange change) {
+						seen.add(change);
+					}
+				})
+				.run(args.stream().map(arg -> "--" + arg).toArray(String[]::new));
+		nodes.add(context);
+		return context;
+	}
+
+	private static List<RelayedPersonChange> take(BlockingQueue<RelayedPersonChange> seen, int count)
+			throws InterruptedException {
+		List<RelayedPersonChange> changes = new ArrayList<>();
+		while (changes.size() < count) {
+			RelayedPersonChange change = seen.poll(10, TimeUnit.SECONDS);
+			assertThat(change).as("relayed change #%d", changes.size() + 1).isNotNull();
+			changes.add(change);
+		}
+		return changes;
+	}
+
+	private static Person person(String name) {
+		Person p = new Person();
+		p.setName(name);
+		p.setHeight(170);
+		p.setEyeColor(Color.GREEN);
+		p.setHairColor(Color.BLACK);
+		p.setNationality(Country.USA);
+		p.setCoordinates(new Coordinates(1, 2f));
+		return p;
+	}
+}
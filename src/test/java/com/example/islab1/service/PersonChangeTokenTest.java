@@ -0,0 +1,57 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.Color;
+import com.example.islab1.model.Country;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PersonChangeTokenTest {
+
+	private final PersonChangeToken token = new PersonChangeToken(100);
+
+	@Test
+	void collectionTagChangesOnEveryCommittedChange() {
+		String before = token.collectionTag("persons");
+		assertThat(token.collectionTag("persons")).isEqualTo(before);
+
+		token.onPersonChange(PersonChangeEvent.bulkImported());
+
+		assertThat(token.collectionTag("persons")).isNotEqualTo(before);
+	}
+
+	@Test
+	void rowTagFollowsEvents() {
+		PersonRow v1 = row(1L, 10.0);
+		assertThat(token.remember(v1, token.generation())).isEqualTo(token.knownTag(1));
+
+		PersonRow v2 = row(2L, 10.0);
+		token.onPersonChange(PersonChangeEvent.updated(v1, v2));
+		assertThat(token.knownTag(1)).isEqualTo(PersonChangeToken.tag(v2));
+
+		token.onPersonChange(PersonChangeEvent.deleted(v2));
+		assertThat(token.knownTag(1)).isNull();
+	}
+
+	@Test
+	void staleReadIsNotRemembered() {
+		long generation = token.generation();
+		PersonRow stale = row(1L, 10.0);
+		token.onPersonChange(PersonChangeEvent.deleted(stale));
+
+		token.remember(stale, generation);
+
+		assertThat(token.knownTag(1)).isNull();
+	}
+
+	@Test
+	void rowTagCoversAssociationsWithTheSameVersion() {
+		// правка только location не меняет version Person
+		assertThat(PersonChangeToken.tag(row(1L, 10.0))).isNotEqualTo(PersonChangeToken.tag(row(1L, 11.0)));
+	}
+
+	private static PersonRow row(long version, double locationX) {
+		return new PersonRow(1, version, "person-1", 180, Color.BLUE, Color.BLACK, Country.USA,
+				1f, 2f, 7L, locationX, 3, 4, null, 0L);
+	}
+}
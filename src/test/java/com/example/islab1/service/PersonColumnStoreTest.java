@@ -0,0 +1,110 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.Color;
+import com.example.islab1.repo.PersonColumnChecksum;
+import com.example.islab1.repo.PersonHeightRow;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// снимок после вставок, замен и удалений отвечает как прямой подсчёт по тем же строкам
+class PersonColumnStoreTest {
+
+	private static final Color[] COLORS = Color.values();
+
+	private final PersonColumnStore store = new PersonColumnStore(16);
+	private final Map<Integer, Row> rows = new HashMap<>();
+
+	PersonColumnStoreTest() {
+		SplittableRandom random = new SplittableRandom(5);
+		// больше CHUNK строк - проходы идут параллельно
+		for (int i = 0; i < PersonColumnStore.CHUNK * 2 + 1_000; i++) {
+			int id = random.nextInt(1, 120_000);
+			if (random.nextInt(10) == 0) {
+				store.remove(id);
+				rows.remove(id);
+			} else {
+				Row row = new Row(id, "p" + id + "-" + i, random.nextInt(1, 300), COLORS[random.nextInt(COLORS.length)],
+						random.nextInt(4) == 0 ? null : (long) random.nextInt(1, 50));
+				store.put(row.id, row.name, row.height, row.hairColor, row.locationId);
+				rows.put(id, row);
+			}
+		}
+	}
+
+	@Test
+	void heightsMatchRows() {
+		List<Integer> distinct = rows.values().stream().map(Row::height).distinct().sorted().toList();
+
+		assertThat(store.size()).isEqualTo(rows.size());
+		assertThat(store.distinctHeightsAfter(100, 20)).isEqualTo(distinct.stream().filter(h -> h > 100).limit(20).toList());
+		assertThat(Arrays.stream(store.distinctHeights()).boxed().toList()).isEqualTo(distinct);
+	}
+
+	@Test
+	void heightRowsPageInHeightIdOrder() {
+		List<PersonHeightRow> expected = rows.values().stream()
+				.filter(r -> r.height > 150)
+				.sorted(Comparator.comparingInt(Row::height).thenComparingInt(Row::id))
+				.map(r -> new PersonHeightRow(r.id, r.name, r.height))
+				.toList();
+
+		List<PersonHeightRow> paged = new ArrayList<>();
+		int afterHeight = 150;
+		int afterId = 0;
+		List<PersonHeightRow> page;
+		do {
+			page = store.heightRowsAfter(150, afterHeight, afterId, 777);
+			paged.addAll(page);
+			if (!page.isEmpty()) {
+				afterHeight = page.get(page.size() - 1).height();
+				afterId = page.get(page.size() - 1).id();
+			}
+		} while (page.size() == 777);
+
+		assertThat(paged).isEqualTo(expected);
+		long[] keys = store.heightKeysGreaterThan(150);
+		assertThat(store.rows(keys, 0, keys.length)).isEqualTo(expected);
+	}
+
+	@Test
+	void countsMatchRows() {
+		for (Color color : COLORS) {
+			long count = rows.values().stream().filter(r -> r.hairColor == color).count();
+			long inLocation = rows.values().stream()
+					.filter(r -> r.hairColor == color && Long.valueOf(7).equals(r.locationId))
+					.count();
+
+			assertThat(store.hairColorShare(color)).isEqualTo(count * 100.0 / rows.size());
+			assertThat(store.countHairColorInLocation(color, 7)).isEqualTo(inLocation);
+		}
+	}
+
+	@Test
+	void driftAgainstChecksums() {
+		List<PersonColumnChecksum> checksums = new ArrayList<>();
+		for (Color color : COLORS) {
+			List<Row> same = rows.values().stream().filter(r -> r.hairColor == color).toList();
+			if (!same.isEmpty()) {
+				checksums.add(new PersonColumnChecksum(color, (long) same.size(),
+						same.stream().mapToLong(Row::height).sum(),
+						same.stream().mapToLong(Row::id).sum(),
+						same.stream().mapToLong(r -> r.locationId == null ? 0 : r.locationId).sum()));
+			}
+		}
+		assertThat(store.drift(checksums)).isZero();
+
+		// та же строка с другой высотой: количества сходятся, суммы - нет
+		Row any = rows.values().iterator().next();
+		store.put(any.id, any.name, any.height + 1, any.hairColor, any.locationId);
+		assertThat(store.drift(checksums)).isEqualTo(1);
+
+		store.remove(any.id);
+		assertThat(store.drift(checksums)).isEqualTo(1);
+	}
+
+	private record Row(int id, String name, int height, Color hairColor, Long locationId) {
+	}
+}
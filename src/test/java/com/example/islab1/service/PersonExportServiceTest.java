@@ -0,0 +1,163 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.*;
+import com.example.islab1.repo.PersonFilter;
+import com.example.islab1.repo.PersonRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.flyway.enabled=false",
+		"islab1.export.fetch-size=7"
+})
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, ValidationAutoConfiguration.class})
+@Import({PersonExportService.class, PersonImportService.class})
+class PersonExportServiceTest {
+
+	private static final int ROWS = 25;
+
+	@Autowired
+	private PersonExportService exportService;
+
+	@Autowired
+	private PersonImportService importService;
+
+	@Autowired
+	private PersonRepository repo;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private EntityManager em;
+
+	@BeforeEach
+	void seed() {
+		List<Person> persons = new ArrayList<>();
+		for (int i = 0; i < ROWS; i++) {
+			Person p = new Person();
+			p.setName(i == 0 ? "comma, \"quoted\"" : "person-" + i);
+			p.setHeight(150 + i);
+			p.setEyeColor(Color.BLUE);
+			p.setHairColor(Color.BLACK);
+			p.setNationality(i % 2 == 0 ? Country.USA : Country.VATICAN);
+			p.setCoordinates(new Coordinates(i, (float) i));
+			if (i % 3 != 0) {
+				p.setLocation(new Location((double) i, i, -i));
+			}
+			persons.add(p);
+		}
+		repo.saveAllAndFlush(persons);
+		em.clear();
+	}
+
+	@Test
+	void csvHasImportColumnsAndEveryRow() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long rows = exportService.export(PersonFilter.NONE, PersonExportService.Format.CSV, false, out);
+
+		List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+		assertThat(rows).isEqualTo(ROWS);
+		assertThat(lines).hasSize(ROWS + 1);
+		assertThat(lines.get(0)).isEqualTo("id,creationDate," + String.join(",", PersonImportRecord.CSV_COLUMNS));
+		assertThat(lines.get(1)).contains(",\"comma, \"\"quoted\"\"\",");
+		// после выгрузки в контексте не остаётся сущностей
+		assertThat(em.unwrap(SessionImplementor.class).getPersistenceContextInternal().getNumberOfManagedEntities())
+				.isZero();
+	}
+
+	@Test
+	void csvWithLineBreaksInNamesImportsBack() throws IOException {
+		List<String> names = List.of("two\nlines", "crlf\r\nname", "cr\ronly");
+		for (String name : names) {
+			Person p = new Person();
+			p.setName(name);
+			p.setHeight(180);
+			p.setEyeColor(Color.GREEN);
+			p.setHairColor(Color.WHITE);
+			p.setNationality(Country.NORTH_KOREA);
+			p.setCoordinates(new Coordinates(1, 1f));
+			repo.save(p);
+		}
+		repo.flush();
+		em.clear();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		exportService.export(PersonFilter.parse(Map.of("nationality", "NORTH_KOREA")),
+				PersonExportService.Format.CSV, false, out);
+
+		ImportReport report = importService.importPersons(new ByteArrayInputStream(out.toByteArray()),
+				PersonImportService.Format.CSV);
+
+		assertThat(report.rejected()).isZero();
+		assertThat(report.accepted()).isEqualTo(names.size());
+		assertThat(repo.findAll()).extracting(Person::getName)
+				.filteredOn(names::contains)
+				.containsExactlyInAnyOrderElementsOf(List.of(names.get(0), names.get(0), names.get(1), names.get(1),
+						names.get(2), names.get(2)));
+	}
+
+	@Test
+	void gzipNdjsonAppliesFilter() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PersonFilter usa = PersonFilter.parse(Map.of("nationality", "USA"));
+		long rows = exportService.export(usa, PersonExportService.Format.NDJSON, true, out);
+
+		String text = new String(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())).readAllBytes(),
+				StandardCharsets.UTF_8);
+		List<String> lines = text.lines().toList();
+		assertThat(rows).isEqualTo((ROWS + 1) / 2);
+		assertThat(lines).hasSize((int) rows);
+		for (String line : lines) {
+			JsonNode json = objectMapper.readTree(line);
+			assertThat(json.get("nationality").asText()).isEqualTo("USA");
+			assertThat(json.has("coordinatesY")).isTrue();
+		}
+	}
+
+	@Test
+	void columnarWritesOneGroupAndTerminator() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		exportService.export(PersonFilter.NONE, PersonExportService.Format.COLUMNAR, false, out);
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+		assertThat(in.readNBytes(4)).isEqualTo(PersonColumnarWriter.MAGIC);
+		assertThat(in.readUnsignedByte()).isEqualTo(PersonColumnarWriter.VERSION);
+		skipDictionary(in, Color.values().length);
+		skipDictionary(in, Country.values().length);
+		assertThat(in.readInt()).isEqualTo(ROWS);
+
+		byte[] bytes = out.toByteArray();
+		assertThat(ByteBuffer.wrap(bytes, bytes.length - 4, 4).getInt()).isZero();
+	}
+
+	private static void skipDictionary(DataInputStream in, int expected) throws IOException {
+		assertThat(in.readUnsignedByte()).isEqualTo(expected);
+		for (int i = 0; i < expected; i++) {
+			in.readUTF();
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.Person;
+import com.example.islab1.repo.PersonRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.flyway.enabled=false"
+})
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, ValidationAutoConfiguration.class})
+@Import(PersonImportService.class)
+class PersonImportServiceTest {
+
+	@Autowired
+	private PersonImportService importService;
+
+	@Autowired
+	private PersonRepository repo;
+
+	@Test
+	void partialLocationIsRejectedPerRow() throws IOException {
+		String csv = """
+				name,height,eyeColor,hairColor,nationality,coordinatesX,coordinatesY,locationX,locationY,locationZ
+				full,170,BLUE,BLACK,USA,1,1,1.5,2,3
+				"two
+				lines",170,BLUE,BLACK,USA,1,1,,,
+				no-y,170,BLUE,BLACK,USA,1,1,1.5,,3
+				no-z,170,BLUE,BLACK,USA,1,1,1.5,2,
+				""";
+
+		ImportReport report = importService.importPersons(
+				new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), PersonImportService.Format.CSV);
+
+		assertThat(report.accepted()).isEqualTo(2);
+		// номер строки файла: запись с переводом строки в имени занимает две
+		assertThat(report.rejects()).extracting(ImportReport.Reject::line).containsExactly(5L, 6L);
+		assertThat(report.rejects()).allSatisfy(r -> assertThat(r.message()).contains("locationX, locationY and locationZ"));
+		assertThat(repo.findAll()).extracting(Person::getName).containsExactlyInAnyOrder("full", "two\nlines");
+	}
+}
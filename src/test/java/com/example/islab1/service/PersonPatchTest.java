@@ -0,0 +1,115 @@
+package com.example.islab1.service;
+
+import com.example.islab1.model.Color;
+import com.example.islab1.model.Coordinates;
+import com.example.islab1.model.Country;
+import com.example.islab1.model.Person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// SQL правки видно в выводе show-sql; H2 вместо PostgreSQL, схема из сущностей
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:patch;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.flyway.enabled=false",
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.jpa.show-sql=true",
+		"spring.jpa.properties.hibernate.format_sql=false",
+		"islab1.outbox.enabled=false"
+})
+@RecordApplicationEvents
+@ExtendWith(OutputCaptureExtension.class)
+class PersonPatchTest {
+
+	@Autowired
+	private PersonService service;
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Autowired
+	private ApplicationEvents events;
+
+	private Person person;
+
+	@BeforeEach
+	void create() {
+		Person p = new Person();
+		p.setName("alice");
+		p.setHeight(170);
+		p.setEyeColor(Color.BLUE);
+		p.setHairColor(Color.BLACK);
+		p.setNationality(Country.USA);
+		p.setCoordinates(new Coordinates(1, 2f));
+		person = service.create(p);
+		events.clear();
+	}
+
+	@Test
+	void patchUpdatesOnlyChangedColumnsAndBumpsVersionOnce(CapturedOutput output) {
+		int from = output.length();
+		Person patched = service.patch(person.getId(), null, patch(190, null));
+
+		assertThat(personUpdates(output, from)).containsExactly(
+				"update persons set height=?,version=? where id=? and version=?");
+		assertVersion(patched, person.getVersion() + 1);
+	}
+
+	@Test
+	void noOpPatchWritesNothing(CapturedOutput output) {
+		int from = output.length();
+		Person patched = service.patch(person.getId(), person.getVersion(), patch(170, 1f));
+
+		assertThat(output.toString().substring(from)).doesNotContain("update ");
+		assertThat(patched.getVersion()).isEqualTo(person.getVersion());
+		assertThat(databaseVersion()).isEqualTo(person.getVersion());
+		assertThat(events.stream(PersonChangeEvent.class)).isEmpty();
+	}
+
+	@Test
+	void associationOnlyPatchBumpsVersionOnce(CapturedOutput output) {
+		int from = output.length();
+		Person patched = service.patch(person.getId(), person.getVersion(), patch(null, 5f));
+
+		assertThat(output.toString().substring(from)).contains("update coordinates set x=?");
+		assertThat(personUpdates(output, from)).containsExactly("update persons set version=? where id=? and version=?");
+		assertVersion(patched, person.getVersion() + 1);
+	}
+
+	// версия выросла ровно на 1 - в БД, у возвращённой сущности и в событии UPDATED
+	private void assertVersion(Person patched, long expected) {
+		assertThat(databaseVersion()).isEqualTo(expected);
+		assertThat(patched.getVersion()).isEqualTo(expected);
+		assertThat(events.stream(PersonChangeEvent.class)).singleElement()
+				.satisfies(e -> assertThat(e.version()).isEqualTo(expected));
+	}
+
+	private long databaseVersion() {
+		return jdbc.queryForObject("SELECT version FROM persons WHERE id = ?", Long.class, person.getId());
+	}
+
+	private static List<String> personUpdates(CapturedOutput output, int from) {
+		return output.toString().substring(from).lines()
+				.filter(line -> line.startsWith("Hibernate: update persons"))
+				.map(line -> line.substring("Hibernate: ".length()))
+				.toList();
+	}
+
+	private static PersonPatch patch(Integer height, Float coordinatesX) {
+		return new PersonPatch(null, coordinatesX, null, null, null, height, null, null, null);
+	}
+}
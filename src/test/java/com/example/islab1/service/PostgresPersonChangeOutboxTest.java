@@ -0,0 +1,23 @@
+package com.example.islab1.service;
+
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+
+// тот же сценарий на PostgreSQL с миграциями и настоящей pg_advisory_xact_lock; без Docker пропускается
+@Testcontainers(disabledWithoutDocker = true)
+class PostgresPersonChangeOutboxTest extends PersonChangeOutboxTest {
+
+	@Container
+	static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+	@Override
+	protected List<String> database() {
+		return List.of(
+				"spring.datasource.url=" + postgres.getJdbcUrl(),
+				"spring.datasource.username=" + postgres.getUsername(),
+				"spring.datasource.password=" + postgres.getPassword());
+	}
+}
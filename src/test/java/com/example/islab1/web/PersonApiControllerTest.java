@@ -0,0 +1,123 @@
+package com.example.islab1.web;
+
+import com.example.islab1.model.Color;
+import com.example.islab1.model.Coordinates;
+import com.example.islab1.model.Country;
+import com.example.islab1.model.Location;
+import com.example.islab1.model.Person;
+import com.example.islab1.service.PersonService;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// PATCH настоящим JSON через MockMvc: чтение тела Jackson-ом тоже часть merge patch
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:api;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.flyway.enabled=false",
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		// CaffeineCachingProvider один на JVM - кэш второго уровня смешал бы строки с другими тестами
+		"spring.jpa.properties.hibernate.cache.use_second_level_cache=false"
+})
+@AutoConfigureMockMvc
+class PersonApiControllerTest {
+
+	private static final LocalDate BIRTHDAY = LocalDate.of(1990, 5, 17);
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Autowired
+	private PersonService service;
+
+	@Autowired
+	private TransactionTemplate tx;
+
+	private Person person;
+
+	@BeforeEach
+	void create() {
+		Person p = new Person();
+		p.setName("alice");
+		p.setHeight(170);
+		p.setEyeColor(Color.BLUE);
+		p.setHairColor(Color.BLACK);
+		p.setNationality(Country.USA);
+		p.setBirthday(Date.valueOf(BIRTHDAY));
+		p.setCoordinates(new Coordinates(1, 2f));
+		p.setLocation(new Location(3.0, 4, 5));
+		person = service.create(p);
+	}
+
+	@Test
+	void absentFieldsAreLeftAlone() throws Exception {
+		patchJson("{\"height\":190}")
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.height").value(190));
+
+		Person stored = stored();
+		assertThat(stored.getHeight()).isEqualTo(190);
+		assertThat(stored.getBirthday().toString()).isEqualTo(BIRTHDAY.toString());
+		assertThat(stored.getLocation()).isNotNull();
+		assertThat(stored.getLocation().getX()).isEqualTo(3.0);
+	}
+
+	@Test
+	void explicitNullClearsLocationAndBirthday() throws Exception {
+		patchJson("{\"location\":null,\"birthday\":null}").andExpect(status().isOk());
+
+		Person stored = stored();
+		assertThat(stored.getLocation()).isNull();
+		assertThat(stored.getBirthday()).isNull();
+	}
+
+	@Test
+	void partialLocationIsMergedIntoExisting() throws Exception {
+		patchJson("{\"location\":{\"x\":7}}").andExpect(status().isOk());
+
+		Location location = stored().getLocation();
+		assertThat(location.getX()).isEqualTo(7.0);
+		assertThat(location.getY()).isEqualTo(4);
+		assertThat(location.getZ()).isEqualTo(5);
+	}
+
+	@Test
+	void newLocationNeedsAllCoordinates() throws Exception {
+		patchJson("{\"location\":null}").andExpect(status().isOk());
+
+		patchJson("{\"location\":{\"x\":7}}").andExpect(status().isBadRequest());
+		assertThat(stored().getLocation()).isNull();
+	}
+
+	private ResultActions patchJson(String body) throws Exception {
+		return mvc.perform(patch("/api/persons/{id}", person.getId())
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(body));
+	}
+
+	// location ленивый - читаем внутри транзакции
+	private Person stored() {
+		return tx.execute(status -> {
+			Person p = service.get(person.getId()).orElseThrow();
+			Hibernate.initialize(p.getLocation());
+			return p;
+		});
+	}
+}